@@ -1,28 +1,68 @@
 package com.joshcummings.codeplay.concurrency;
 
-import java.util.Observable;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
-public class Address extends Observable {
-	private static AtomicInteger ID_SOURCE = new AtomicInteger();
+/**
+ * An address, and whether it has been verified yet.
+ *
+ * Anything that wants to hear about verification can register a listener. Addresses are verified in
+ * batches, so setVerified needs to stay cheap: with no listeners it is a volatile write and a volatile
+ * read, and with listeners it is a walk over an array. Listeners are added and removed by swapping in
+ * a copy of that array, so nothing here ever takes a lock.
+ */
+public class Address {
+	/**
+	 * Called on whichever thread verified the address, so it should be quick
+	 */
+	public interface VerificationListener {
+		void verificationChanged(Address address, boolean verified);
+	}
+
+	private static final VerificationListener[] NONE = new VerificationListener[0];
+
+	private static final AtomicReferenceFieldUpdater<Address, VerificationListener[]> LISTENERS =
+			AtomicReferenceFieldUpdater.newUpdater(Address.class, VerificationListener[].class, "listeners");
+
+	private static final IdAllocator IDS = new IdAllocator();
+	
+	// readers share a copy of these between all of the addresses that have the same value
+	public static final StringPool CITIES = new StringPool(4096);
+	public static final StringPool STATES = new StringPool(256);
+	public static final StringPool ZIP_CODES = new StringPool(16 * 1024);
 	
-	private final Integer id;
+	private final long id;
 	private final String address1;
 	private final String city;
 	private final String state;
 	private final String zipCode;
 	
-	private boolean verified;
+	private volatile boolean verified;
+	private volatile boolean decided;
+	private volatile VerificationListener[] listeners = NONE;
 	
 	public Address(String address1, String city, String state, String zipCode) {
-		this.id = ID_SOURCE.incrementAndGet();
+		this.id = IDS.nextId();
 		this.address1 = address1;
 		this.city = city;
 		this.state = state;
 		this.zipCode = zipCode;
 	}
+
+	/**
+	 * For subclasses that stand in for an address, say to keep what a verifier decides about it somewhere
+	 * other than on the original. The stand-in has the same id as the original instead of a new one.
+	 */
+	protected Address(Address original) {
+		this.id = original.id;
+		this.address1 = original.address1;
+		this.city = original.city;
+		this.state = original.state;
+		this.zipCode = original.zipCode;
+	}
 	
-	public Integer getId() {
+	public long getId() {
 		return id;
 	}
 	public String getAddress1() {
@@ -39,12 +79,81 @@ public class Address extends Observable {
 	}
 	public void setVerified(boolean verified) {
 		this.verified = verified;
-		this.setChanged();
-		this.notifyObservers();
+		this.decided = true;
+		recordOutcome(verified);
+		for ( VerificationListener listener : listeners ) {
+			listener.verificationChanged(this, verified);
+		}
 	}
 	public boolean isVerified() {
 		return verified;
 	}
+
+	/**
+	 * Called each time the address is decided, before any listener hears about it. Stand-ins override
+	 * this to keep the outcome somewhere else as well.
+	 */
+	protected void recordOutcome(boolean verified) {
+	}
+
+	public void addVerificationListener(VerificationListener listener) {
+		VerificationListener[] current;
+		VerificationListener[] updated;
+		do {
+			current = listeners;
+			updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = listener;
+		} while ( !LISTENERS.compareAndSet(this, current, updated) );
+	}
+
+	public void removeVerificationListener(VerificationListener listener) {
+		VerificationListener[] current;
+		VerificationListener[] updated;
+		do {
+			current = listeners;
+			int index = Arrays.asList(current).indexOf(listener);
+			if ( index < 0 ) {
+				return;
+			}
+			updated = new VerificationListener[current.length - 1];
+			System.arraycopy(current, 0, updated, 0, index);
+			System.arraycopy(current, index + 1, updated, index, updated.length - index);
+		} while ( !LISTENERS.compareAndSet(this, current, updated) );
+	}
+
+	/**
+	 * Completes with the outcome the next time this address is verified, or right away if it already
+	 * has been. Verifiers that batch their work return before the verdict is in; this is how to wait for
+	 * it without polling isVerified. Cancelling it stops listening.
+	 */
+	public CompletableFuture<Boolean> verification() {
+		CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+		VerificationListener once = new VerificationListener() {
+			@Override
+			public void verificationChanged(Address address, boolean verified) {
+				outcome.complete(verified);
+			}
+		};
+		addVerificationListener(once);
+		outcome.whenComplete((verified, cancelled) -> removeVerificationListener(once));
+		// it may have been decided before the listener went in
+		if ( decided ) {
+			removeVerificationListener(once);
+			outcome.complete(verified);
+		}
+		return outcome;
+	}
+
+	/**
+	 * Completes once every one of the addresses has been verified
+	 */
+	public static CompletableFuture<Void> verificationOf(Iterable<Address> addresses) {
+		CompletableFuture<Void> all = CompletableFuture.completedFuture(null);
+		for ( Address address : addresses ) {
+			all = all.thenCombine(address.verification(), (ignored, verified) -> null);
+		}
+		return all;
+	}
 	public String toString() {
 		return "Address #" + id;
 	}
@@ -2,11 +2,10 @@ package com.joshcummings.codeplay.concurrency;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
 
 public class BadIdentity implements Identity {
 
-	public Integer getId() {
+	public long getId() {
 		return 0;
 	}
 	
@@ -43,9 +42,4 @@ public class BadIdentity implements Identity {
 	public List<Address> getAddresses() {
 		return Collections.emptyList();
 	}
-
-	@Override
-	public ReentrantLock getLock() {
-		return null;
-	}
 }
@@ -0,0 +1,245 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reads identities written by BinaryIdentityWriter.
+ *
+ * Every field is prefixed with its length, so there is nothing to scan for: the reader pulls in a whole
+ * record with one bulk read and decodes it from there, with ASCII text copied straight across. Unlike
+ * the TSV readers, a record can carry any number of addresses.
+ *
+ * As an IdentityReader, it can stand in for any of the line-based readers in the pipelines. Given a
+ * file, it can also hand back a parallel stream that decodes each block on its own thread.
+ */
+public class BinaryIdentityReader implements IdentityReader {
+	// a single mapping can't be larger than Integer.MAX_VALUE, so blocks are mapped in segments under that
+	private static final long MAX_SEGMENT_SIZE = 1L << 30;
+	private static final int BLOCK_HEADER_SIZE = 8;
+
+	// each thread decodes into its own scratch space
+	private static final ThreadLocal<RecordDecoder> DECODERS = ThreadLocal.withInitial(RecordDecoder::new);
+
+	@Override
+	public Identity read(InputStream is) {
+		try {
+			RecordDecoder decoder = DECODERS.get();
+			int length;
+			do {
+				if ( !decoder.fill(is, 4) ) {
+					return null;
+				}
+				length = decoder.readInt();
+				// a block header; the record count that follows isn't needed when reading record by record
+				if ( length < 0 && !decoder.fill(is, 4) ) {
+					return null;
+				}
+			} while ( length < 0 );
+
+			// a corrupt length would otherwise have us allocate whatever it says before reading a byte
+			if ( length > BinaryIdentityWriter.MAX_RECORD_SIZE || !decoder.fill(is, length) ) {
+				return new BadIdentity();
+			}
+			return decoder.decode();
+		} catch ( IOException e ) {
+			e.printStackTrace();
+			return null;
+		} catch ( Exception e ) {
+			return new BadIdentity();
+		}
+	}
+
+	/**
+	 * Maps the file and returns a parallel stream of its identities, one block per task. Identities are
+	 * only ordered within a block.
+	 */
+	public Stream<Identity> read(Path file) throws IOException {
+		return blocks(file).parallelStream().flatMap(this::readBlock);
+	}
+
+	private Stream<Identity> readBlock(ByteBuffer block) {
+		RecordDecoder decoder = DECODERS.get();
+		List<Identity> identities = new ArrayList<>();
+		while ( block.hasRemaining() ) {
+			int length = block.remaining() < 4 ? -1 : block.getInt();
+			if ( length < 0 || length > block.remaining() || length > BinaryIdentityWriter.MAX_RECORD_SIZE ) {
+				// a corrupt length; nothing after it in this block can be trusted
+				identities.add(new BadIdentity());
+				break;
+			}
+			decoder.fill(block, length);
+			try {
+				identities.add(decoder.decode());
+			} catch ( Exception e ) {
+				identities.add(new BadIdentity());
+			}
+		}
+		return identities.stream();
+	}
+
+	/**
+	 * Walks the block headers, without looking at any records, and maps each block. The mappings remain
+	 * valid after the channel is closed.
+	 */
+	private List<ByteBuffer> blocks(Path file) throws IOException {
+		try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ) {
+			long size = channel.size();
+
+			// start and end of each block's records
+			List<long[]> spans = new ArrayList<>();
+			ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+			long at = 0;
+			while ( at < size ) {
+				header.clear();
+				while ( header.hasRemaining() && channel.read(header, at + header.position()) > 0 );
+				int length = -header.getInt(0);
+				if ( header.hasRemaining() || length < 0 || at + BLOCK_HEADER_SIZE + length > size ) {
+					throw new IOException("Malformed block at offset " + at + " of " + file);
+				}
+				spans.add(new long[] { at + BLOCK_HEADER_SIZE, at + BLOCK_HEADER_SIZE + length });
+				at += BLOCK_HEADER_SIZE + length;
+			}
+
+			List<ByteBuffer> blocks = new ArrayList<>(spans.size());
+			int first = 0;
+			for ( int i = 0; i <= spans.size(); i++ ) {
+				if ( i == spans.size() || spans.get(i)[1] - spans.get(first)[0] > MAX_SEGMENT_SIZE ) {
+					if ( i > first ) {
+						long start = spans.get(first)[0];
+						ByteBuffer segment = channel.map(MapMode.READ_ONLY, start, spans.get(i - 1)[1] - start);
+						for ( long[] span : spans.subList(first, i) ) {
+							ByteBuffer block = segment.duplicate();
+							block.position((int)( span[0] - start ));
+							block.limit((int)( span[1] - start ));
+							blocks.add(block.slice());
+						}
+					}
+					first = i;
+				}
+			}
+			return blocks;
+		}
+	}
+
+	/**
+	 * Holds one record's bytes and decodes its fields in order
+	 */
+	private static class RecordDecoder {
+		private final Utf8Decoder utf8 = new Utf8Decoder();
+
+		private byte[] buf = new byte[1024];
+		private int length;
+		private int pos;
+
+		boolean fill(InputStream is, int length) throws IOException {
+			reserve(length);
+			int read = 0;
+			while ( read < length ) {
+				int n = is.read(buf, read, length - read);
+				if ( n == -1 ) {
+					return false;
+				}
+				read += n;
+			}
+			return true;
+		}
+
+		void fill(ByteBuffer source, int length) {
+			reserve(length);
+			source.get(buf, 0, length);
+		}
+
+		private void reserve(int length) {
+			if ( buf.length < length ) {
+				buf = new byte[Math.max(length, buf.length * 2)];
+			}
+			this.length = length;
+			this.pos = 0;
+		}
+
+		Identity decode() {
+			// arguments are evaluated left to right, which is the order of the fields in the record
+			Person person = new Person(readString(), readChars(),
+					readString(), readString(), readString(),
+					readAddresses(),
+					readInt());
+			if ( pos != length ) {
+				throw new IllegalStateException("Record has " + ( length - pos ) + " unread bytes");
+			}
+			return person;
+		}
+
+		private List<Address> readAddresses() {
+			int count = readShort();
+			List<Address> addresses = new ArrayList<>(count);
+			for ( int i = 0; i < count; i++ ) {
+				addresses.add(new Address(readString(), readString(Address.CITIES), readString(Address.STATES), readString(Address.ZIP_CODES)));
+			}
+			return addresses;
+		}
+
+		int readInt() {
+			check(4);
+			int value = ( buf[pos] & 0xff ) << 24 | ( buf[pos + 1] & 0xff ) << 16 | ( buf[pos + 2] & 0xff ) << 8 | ( buf[pos + 3] & 0xff );
+			pos += 4;
+			return value;
+		}
+
+		private int readShort() {
+			check(2);
+			int value = ( buf[pos] & 0xff ) << 8 | ( buf[pos + 1] & 0xff );
+			pos += 2;
+			return value;
+		}
+
+		private String readString() {
+			int n = readShort();
+			if ( n == BinaryIdentityWriter.NULL_STRING ) {
+				return null;
+			}
+			check(n);
+			String value = utf8.decode(buf, pos, n);
+			pos += n;
+			return value;
+		}
+
+		private String readString(StringPool pool) {
+			int n = readShort();
+			if ( n == BinaryIdentityWriter.NULL_STRING ) {
+				return null;
+			}
+			check(n);
+			String value = pool.intern(buf, pos, n, utf8);
+			pos += n;
+			return value;
+		}
+
+		private char[] readChars() {
+			int n = readShort();
+			if ( n == BinaryIdentityWriter.NULL_STRING ) {
+				return null;
+			}
+			check(n);
+			char[] chars = new char[n];
+			int decoded = utf8.decode(buf, pos, n, chars);
+			pos += n;
+			return decoded == n ? chars : Arrays.copyOf(chars, decoded);
+		}
+
+		private void check(int needed) {
+			if ( pos + needed > length ) {
+				throw new IllegalStateException("Record is truncated");
+			}
+		}
+	}
+}
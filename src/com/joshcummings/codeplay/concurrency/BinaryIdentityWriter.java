@@ -0,0 +1,152 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes identities in the compact binary format that BinaryIdentityReader reads.
+ *
+ * The output is a sequence of blocks, each made up of a header and as many whole records as fit in the
+ * configured block size:
+ *
+ * <pre>
+ * block   := int -(length of records), int record count, record*
+ * record  := int length, string username, string password, string name, string phone number,
+ *            string email address, short address count, address*, int age
+ * address := string address1, string city, string state, string zip code
+ * string  := unsigned short byte count (0xFFFF for null), UTF-8 bytes
+ * </pre>
+ *
+ * All ints are big-endian. Block headers are negative and record lengths are not, so a reader walking
+ * the stream one record at a time can tell the two apart without keeping any state, and a reader that
+ * wants the blocks can skip from one to the next without parsing a single record.
+ */
+public class BinaryIdentityWriter implements Closeable, Flushable {
+	static final int NULL_STRING = 0xFFFF;
+	// the reader won't take anyone's word for a larger record than this
+	static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+	private static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	private final DataOutputStream out;
+	private final int blockSize;
+
+	private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+	private final DataOutputStream blockOut = new DataOutputStream(block);
+	private int recordsInBlock;
+
+	private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+	private final DataOutputStream recordOut = new DataOutputStream(record);
+
+	public BinaryIdentityWriter(OutputStream os) {
+		this(os, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 *
+	 * @param os - Where to write the blocks
+	 * @param blockSize - Roughly how many bytes of records to put in each block. A block is only closed
+	 * 	between records, so a block can run over by up to one record
+	 */
+	public BinaryIdentityWriter(OutputStream os, int blockSize) {
+		if ( blockSize <= 0 ) {
+			throw new IllegalArgumentException("Block size must be positive");
+		}
+		this.out = new DataOutputStream(os);
+		this.blockSize = blockSize;
+	}
+
+	public synchronized void write(Identity identity) throws IOException {
+		record.reset();
+		writeString(identity.getUsername());
+		writeChars(identity.getPassword());
+		writeString(identity.getName());
+		writeString(identity.getPhoneNumber());
+		writeString(identity.getEmailAddress());
+
+		List<Address> addresses = identity.getAddresses();
+		if ( addresses.size() > Short.MAX_VALUE ) {
+			throw new IllegalArgumentException("Identity #" + identity.getId() + " has too many addresses to write");
+		}
+		recordOut.writeShort(addresses.size());
+		for ( Address address : addresses ) {
+			writeString(address.getAddress1());
+			writeString(address.getCity());
+			writeString(address.getState());
+			writeString(address.getZipCode());
+		}
+		recordOut.writeInt(identity.getAge());
+		if ( record.size() > MAX_RECORD_SIZE ) {
+			throw new IllegalArgumentException("Identity #" + identity.getId() + " is too large to write");
+		}
+
+		blockOut.writeInt(record.size());
+		record.writeTo(blockOut);
+		recordsInBlock++;
+
+		if ( block.size() >= blockSize ) {
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Closes the current block, even if it isn't full, and flushes it to the underlying stream
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		writeBlock();
+		out.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		flush();
+		out.close();
+	}
+
+	private void writeBlock() throws IOException {
+		if ( recordsInBlock > 0 ) {
+			out.writeInt(-block.size());
+			out.writeInt(recordsInBlock);
+			block.writeTo(out);
+			block.reset();
+			recordsInBlock = 0;
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		writeBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void writeChars(char[] value) throws IOException {
+		if ( value == null ) {
+			writeBytes(null);
+		} else {
+			// encoded from the chars directly so the password never becomes a String
+			ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(value));
+			byte[] bytes = new byte[encoded.remaining()];
+			encoded.get(bytes);
+			writeBytes(bytes);
+		}
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		if ( bytes == null ) {
+			recordOut.writeShort(NULL_STRING);
+			return;
+		}
+		if ( bytes.length >= NULL_STRING ) {
+			throw new IllegalArgumentException("Field is too long to write: " + bytes.length + " bytes");
+		}
+		recordOut.writeShort(bytes.length);
+		recordOut.write(bytes);
+	}
+}
@@ -0,0 +1,184 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A line source that reads the underlying stream in large chunks and scans for line breaks in bulk.
+ *
+ * LineReader hands each line off to this class when it is given one, so the identity readers no longer
+ * make a virtual read() call per byte. It is still an InputStream, which means that it can be passed
+ * anywhere the pipelines pass their input today, including through ReplayingInputStream.
+ *
+ * Like BufferedInputStream, the read methods are synchronized since the pipelines share one input
+ * across several threads.
+ */
+public class BufferedLineInputStream extends InputStream implements LineSource {
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final InputStream is;
+	private final Utf8Decoder decoder = new Utf8Decoder();
+
+	private byte[] buf;
+	private int pos;
+	private int limit;
+	// how many bytes have been read from the underlying stream in all
+	private long filled;
+
+	public BufferedLineInputStream(InputStream is) {
+		this(is, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 *
+	 * @param is - The underlying stream to read from
+	 * @param bufferSize - The initial size of the chunk read from the underlying stream. The buffer
+	 * 	grows if a single line is ever longer than this
+	 */
+	public BufferedLineInputStream(InputStream is, int bufferSize) {
+		if ( bufferSize <= 0 ) {
+			throw new IllegalArgumentException("Buffer size must be positive");
+		}
+		this.is = is;
+		this.buf = new byte[bufferSize];
+	}
+
+	/**
+	 * Wraps the given stream unless it is already able to hand out lines in bulk.
+	 */
+	public static BufferedLineInputStream wrap(InputStream is) {
+		if ( is instanceof BufferedLineInputStream ) {
+			return (BufferedLineInputStream)is;
+		}
+		return new BufferedLineInputStream(is);
+	}
+
+	/**
+	 * Reads the next line, trimmed, with the same semantics as LineReader: if the stream ends before
+	 * a line break is found, then null is returned.
+	 */
+	public synchronized String readLine() throws IOException {
+		int end = nextLineBreak();
+		if ( end == -1 ) {
+			return null;
+		}
+		int start = trimStart(pos, end);
+		String line = decoder.decode(buf, start, trimEnd(start, end) - start);
+		pos = end + 1;
+		return line;
+	}
+
+	@Override
+	public synchronized boolean readLine(FieldCursor fields) throws IOException {
+		int end = nextLineBreak();
+		if ( end == -1 ) {
+			return false;
+		}
+		int start = trimStart(pos, end);
+		fields.reset(buf, start, trimEnd(start, end) - start);
+		pos = end + 1;
+		return true;
+	}
+
+	/**
+	 * Finds the next line break in the buffer, filling it from the underlying stream as needed.
+	 *
+	 * @return the index of the line break, or -1 if the stream is exhausted first
+	 */
+	private int nextLineBreak() throws IOException {
+		int scanned = pos;
+		while ( true ) {
+			for ( int i = scanned; i < limit; i++ ) {
+				if ( buf[i] == '\n' ) {
+					return i;
+				}
+			}
+			scanned = limit - pos;
+			if ( !fill() ) {
+				pos = limit;
+				return -1;
+			}
+			scanned += pos;
+		}
+	}
+
+	private int trimStart(int start, int end) {
+		while ( start < end && ( buf[start] & 0xff ) <= ' ' ) {
+			start++;
+		}
+		return start;
+	}
+
+	private int trimEnd(int start, int end) {
+		while ( end > start && ( buf[end - 1] & 0xff ) <= ' ' ) {
+			end--;
+		}
+		return end;
+	}
+
+	/**
+	 * Moves any unconsumed bytes to the front of the buffer, grows it if a single line has filled it, and
+	 * then reads as much as the underlying stream will give in one call.
+	 *
+	 * @return false if the underlying stream is exhausted
+	 */
+	private boolean fill() throws IOException {
+		if ( pos > 0 ) {
+			System.arraycopy(buf, pos, buf, 0, limit - pos);
+			limit -= pos;
+			pos = 0;
+		}
+		if ( limit == buf.length ) {
+			byte[] bigger = new byte[buf.length * 2];
+			System.arraycopy(buf, 0, bigger, 0, limit);
+			buf = bigger;
+		}
+		int read = is.read(buf, limit, buf.length - limit);
+		if ( read == -1 ) {
+			return false;
+		}
+		limit += read;
+		filled += read;
+		return true;
+	}
+
+	/**
+	 * How many bytes have been consumed from this stream so far. After a line is read, this is the offset
+	 * of the first byte past its line break.
+	 */
+	public synchronized long position() {
+		return filled - ( limit - pos );
+	}
+
+	@Override
+	public synchronized int read() throws IOException {
+		if ( pos == limit && !fill() ) {
+			return -1;
+		}
+		return buf[pos++] & 0xff;
+	}
+
+	@Override
+	public synchronized int read(byte[] b, int off, int len) throws IOException {
+		if ( len == 0 ) {
+			return 0;
+		}
+		if ( pos == limit && !fill() ) {
+			return -1;
+		}
+		int n = Math.min(len, limit - pos);
+		System.arraycopy(buf, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public synchronized int available() throws IOException {
+		return ( limit - pos ) + is.available();
+	}
+
+	@Override
+	public void close() throws IOException {
+		is.close();
+	}
+}
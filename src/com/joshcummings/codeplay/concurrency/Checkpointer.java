@@ -0,0 +1,286 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import com.joshcummings.codeplay.concurrency.StatsLedger.StatsEntry;
+
+/**
+ * Keeps track of how far ingestion has gotten through a file so that a run that dies part way through can
+ * pick up where it left off instead of starting again from byte zero.
+ *
+ * Each identity is registered, along with the range of bytes it was read from, as it is read. The
+ * pipelines report back when they are done with it. In the asynchronous pipelines, identities finish in
+ * whatever order their tasks happen to, so the committed offset only moves past an identity once it and
+ * everything before it are done. That low-water mark is always safe to resume from: anything after it
+ * might be processed twice after a restart, but nothing before it is ever skipped.
+ *
+ * The checkpoint also carries the stats ledger's counts, but only for identities behind the mark, so that
+ * the counts and the offset always agree with each other. Checkpoints are written to a temporary file,
+ * forced to disk, and then moved over the old one, so a crash mid-write leaves the last good checkpoint.
+ */
+public class Checkpointer {
+	private static final int DEFAULT_INTERVAL = 1000;
+
+	private final Path input;
+	private final Path checkpoint;
+	private final StatsLedger statsLedger;
+	private final int interval;
+
+	// identities that have been read but that the mark hasn't passed yet, by where they start in the file
+	private final TreeMap<Long, Progress> pending = new TreeMap<>();
+	private final Map<Identity, Progress> inFlight = new IdentityHashMap<>();
+
+	private long committedOffset;
+	private final Map<String, Integer> firstNames = new HashMap<>();
+	private final Map<String, Integer> lastNames = new HashMap<>();
+	private final Map<Integer, Integer> ages = new HashMap<>();
+	private int recordCount;
+
+	private int sinceLastSave;
+	private boolean finished;
+
+	private BufferedLineInputStream source;
+	private long base;
+
+	private final Object saving = new Object();
+	private long savedOffset = -1;
+
+	public Checkpointer(Path input, Path checkpoint, StatsLedger statsLedger) {
+		this(input, checkpoint, statsLedger, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 *
+	 * @param input - The file being ingested
+	 * @param checkpoint - Where to keep the checkpoint
+	 * @param statsLedger - The ledger to restore counts to when resuming
+	 * @param interval - How many identities to finish between checkpoints
+	 */
+	public Checkpointer(Path input, Path checkpoint, StatsLedger statsLedger, int interval) {
+		if ( interval <= 0 ) {
+			throw new IllegalArgumentException("Interval must be positive");
+		}
+		this.input = input.toAbsolutePath().normalize();
+		this.checkpoint = checkpoint;
+		this.statsLedger = statsLedger;
+		this.interval = interval;
+	}
+
+	/**
+	 * Restores the ledger from the last checkpoint, if there is one for this file, and opens the file at
+	 * the checkpointed offset
+	 */
+	public synchronized InputStream open() throws IOException {
+		restore();
+		FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+		if ( committedOffset > channel.size() ) {
+			channel.close();
+			throw new IOException("Checkpoint is past the end of " + input);
+		}
+		channel.position(committedOffset);
+		base = committedOffset;
+		source = new BufferedLineInputStream(Channels.newInputStream(channel));
+		return source;
+	}
+
+	/**
+	 * Wraps the reader so that each identity it reads from the opened file is registered with the range
+	 * of bytes it came from
+	 */
+	public IdentityReader track(IdentityReader reader) {
+		return is -> {
+			// held across the read so that another thread's read can't land between the two positions
+			synchronized ( source ) {
+				long start = base + source.position();
+				Identity identity = reader.read(is);
+				if ( identity != null ) {
+					started(identity, start, base + source.position());
+				}
+				return identity;
+			}
+		};
+	}
+
+	private synchronized void started(Identity identity, long start, long end) {
+		Progress progress = new Progress(end);
+		pending.put(start, progress);
+		inFlight.put(identity, progress);
+	}
+
+	/**
+	 * Marks the identity as done. Whether it was persisted, merged, or sent to the malformed repository
+	 * doesn't matter, only that nothing more will happen to it.
+	 *
+	 * @param entry - The entry that was recorded in the stats ledger for it, if any
+	 */
+	public void completed(Identity identity, StatsEntry entry) {
+		Properties snapshot = null;
+		synchronized ( this ) {
+			Progress progress = inFlight.remove(identity);
+			if ( progress == null ) {
+				return;
+			}
+			progress.done = true;
+			progress.entry = entry;
+
+			while ( !pending.isEmpty() && pending.firstEntry().getValue().done ) {
+				Progress first = pending.pollFirstEntry().getValue();
+				committedOffset = first.end;
+				if ( first.entry != null ) {
+					count(first.entry);
+				}
+			}
+
+			if ( ++sinceLastSave >= interval || ( finished && pending.isEmpty() ) ) {
+				snapshot = snapshot();
+			}
+		}
+		save(snapshot);
+	}
+
+	/**
+	 * Says that everything has been read. The final checkpoint is written as soon as every identity that
+	 * was read is done, which may be right away.
+	 */
+	public void finish() {
+		Properties snapshot = null;
+		synchronized ( this ) {
+			finished = true;
+			if ( pending.isEmpty() ) {
+				snapshot = snapshot();
+			}
+		}
+		save(snapshot);
+	}
+
+	/**
+	 * The offset that a restart would resume from
+	 */
+	public synchronized long getCommittedOffset() {
+		return committedOffset;
+	}
+
+	private void count(StatsEntry entry) {
+		firstNames.merge(entry.getFirstName(), 1, Integer::sum);
+		lastNames.merge(entry.getLastName(), 1, Integer::sum);
+		ages.merge(entry.getAge(), 1, Integer::sum);
+		recordCount++;
+	}
+
+	private Properties snapshot() {
+		sinceLastSave = 0;
+		Properties properties = new Properties();
+		properties.setProperty("file", input.toString());
+		properties.setProperty("offset", String.valueOf(committedOffset));
+		properties.setProperty("records", String.valueOf(recordCount));
+		firstNames.forEach((name, count) -> properties.setProperty("firstName." + name, String.valueOf(count)));
+		lastNames.forEach((name, count) -> properties.setProperty("lastName." + name, String.valueOf(count)));
+		ages.forEach((age, count) -> properties.setProperty("age." + age, String.valueOf(count)));
+		return properties;
+	}
+
+	private void save(Properties snapshot) {
+		if ( snapshot == null ) {
+			return;
+		}
+		synchronized ( saving ) {
+			// two threads may have taken snapshots at about the same time; never go backwards
+			long offset = Long.parseLong(snapshot.getProperty("offset"));
+			if ( offset < savedOffset ) {
+				return;
+			}
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				snapshot.store(bytes, "Ingestion checkpoint");
+
+				Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+				try ( FileChannel channel = FileChannel.open(temporary,
+						StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) ) {
+					ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+					while ( buffer.hasRemaining() ) {
+						channel.write(buffer);
+					}
+					channel.force(true);
+				}
+				Files.move(temporary, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				savedOffset = offset;
+			} catch ( IOException e ) {
+				// the next checkpoint will try again; losing one only means redoing a little more work
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void restore() throws IOException {
+		if ( !Files.exists(checkpoint) ) {
+			return;
+		}
+		Properties properties = new Properties();
+		try ( InputStream is = Files.newInputStream(checkpoint) ) {
+			properties.load(is);
+		}
+		if ( !input.toString().equals(properties.getProperty("file")) ) {
+			System.out.println("Ignoring checkpoint for " + properties.getProperty("file"));
+			return;
+		}
+
+		committedOffset = Long.parseLong(properties.getProperty("offset"));
+		recordCount = Integer.parseInt(properties.getProperty("records"));
+		List<String> firsts = new ArrayList<>();
+		List<String> lasts = new ArrayList<>();
+		List<Integer> agesSeen = new ArrayList<>();
+		for ( String key : properties.stringPropertyNames() ) {
+			if ( key.startsWith("firstName.") ) {
+				String name = key.substring("firstName.".length());
+				firstNames.put(name, count(properties, key));
+				firsts.addAll(Collections.nCopies(firstNames.get(name), name));
+			} else if ( key.startsWith("lastName.") ) {
+				String name = key.substring("lastName.".length());
+				lastNames.put(name, count(properties, key));
+				lasts.addAll(Collections.nCopies(lastNames.get(name), name));
+			} else if ( key.startsWith("age.") ) {
+				Integer age = Integer.valueOf(key.substring("age.".length()));
+				ages.put(age, count(properties, key));
+				agesSeen.addAll(Collections.nCopies(ages.get(age), age));
+			}
+		}
+
+		// the ledger counts each of these on its own, so pairing them back up in any order gives it the
+		// same counts it had before
+		for ( int i = 0; i < recordCount; i++ ) {
+			statsLedger.recordEntry(new StatsEntry(firsts.get(i), lasts.get(i), agesSeen.get(i)));
+		}
+		savedOffset = committedOffset;
+	}
+
+	private static int count(Properties properties, String key) {
+		return Integer.parseInt(properties.getProperty(key));
+	}
+
+	private static class Progress {
+		private final long end;
+		private boolean done;
+		private StatsEntry entry;
+
+		public Progress(long end) {
+			this.end = end;
+		}
+	}
+}
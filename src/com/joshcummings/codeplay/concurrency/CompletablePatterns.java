@@ -4,6 +4,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class CompletablePatterns {
+	@SafeVarargs
 	public static <T> CompletableFuture<T> tryAnyOf(CompletableFuture<T>... futures) {
 		final AtomicInteger completedExceptionally = new AtomicInteger();
 		final CompletableFuture<T> promise = new CompletableFuture<>();
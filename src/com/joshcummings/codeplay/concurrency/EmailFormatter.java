@@ -1,5 +1,8 @@
 package com.joshcummings.codeplay.concurrency;
 
 public interface EmailFormatter {
-	void format(Identity identity);
+	/**
+	 * Identities don't change, so this returns a copy with the email address formatted
+	 */
+	Identity format(Identity identity);
 }
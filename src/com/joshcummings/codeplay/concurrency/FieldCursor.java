@@ -0,0 +1,191 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A reusable cursor over the tab-delimited fields of a single line.
+ *
+ * Instead of split("\t"), which allocates an array and a String for every field up front, the cursor
+ * keeps the line's bytes in a buffer it reuses from line to line and walks the delimiter offsets as
+ * fields are asked for. A field is only materialized when a constructor actually needs it, and numeric
+ * fields are parsed straight from the bytes. Text fields are decoded as UTF-8.
+ *
+ * A cursor is not thread-safe; LineReader hands out one per thread.
+ */
+public class FieldCursor {
+	private static final byte DELIMITER = '\t';
+
+	private final Utf8Decoder decoder = new Utf8Decoder();
+
+	private byte[] line = new byte[256];
+	private int length;
+	private int position;
+
+	/**
+	 * Points the cursor at a copy of the given bytes, reusing the cursor's buffer when it is big enough
+	 */
+	void reset(byte[] bytes, int offset, int length) {
+		if ( line.length < length ) {
+			line = new byte[Math.max(length, line.length * 2)];
+		}
+		System.arraycopy(bytes, offset, line, 0, length);
+		this.length = length;
+		this.position = 0;
+	}
+
+	byte[] bytes() {
+		return line;
+	}
+
+	int length() {
+		return length;
+	}
+
+	void clear() {
+		length = 0;
+		position = 0;
+	}
+
+	void append(byte b) {
+		if ( length == line.length ) {
+			byte[] bigger = new byte[line.length * 2];
+			System.arraycopy(line, 0, bigger, 0, length);
+			line = bigger;
+		}
+		line[length++] = b;
+	}
+
+	/**
+	 * Drops leading and trailing whitespace the same way String#trim does
+	 */
+	void trim() {
+		int start = 0;
+		while ( start < length && ( line[start] & 0xff ) <= ' ' ) {
+			start++;
+		}
+		int end = length;
+		while ( end > start && ( line[end - 1] & 0xff ) <= ' ' ) {
+			end--;
+		}
+		if ( start > 0 ) {
+			System.arraycopy(line, start, line, 0, end - start);
+		}
+		length = end - start;
+		position = 0;
+	}
+
+	public boolean hasNext() {
+		return position <= length;
+	}
+
+	/**
+	 * Skips over the next field without materializing it
+	 */
+	public void skip() {
+		position = fieldEnd() + 1;
+	}
+
+	public String nextString() {
+		int start = position;
+		int end = fieldEnd();
+		position = end + 1;
+		return decoder.decode(line, start, end - start);
+	}
+
+	/**
+	 * Like nextString, but hands back the pool's copy of the field, only decoding it if the pool doesn't
+	 * have one yet
+	 */
+	public String nextString(StringPool pool) {
+		int start = position;
+		int end = fieldEnd();
+		position = end + 1;
+		return pool.intern(line, start, end - start, decoder);
+	}
+
+	public char[] nextChars() {
+		int start = position;
+		int end = fieldEnd();
+		position = end + 1;
+		char[] chars = new char[end - start];
+		int decoded = decoder.decode(line, start, end - start, chars);
+		// multi-byte characters leave the array with room to spare
+		return decoded == chars.length ? chars : Arrays.copyOf(chars, decoded);
+	}
+
+	/**
+	 * Materializes the next count fields as one String with the given separator in place of each tab,
+	 * which saves building each field and then concatenating them.
+	 */
+	public String nextJoined(int count, char separator) {
+		int start = position;
+		int end = start;
+		for ( int i = 0; i < count; i++ ) {
+			end = fieldEnd();
+			position = end + 1;
+		}
+		char[] chars = new char[end - start];
+		int decoded = decoder.decode(line, start, end - start, chars);
+		// a tab byte is never part of a multi-byte character, so the swap can happen after decoding
+		for ( int i = 0; i < decoded; i++ ) {
+			if ( chars[i] == DELIMITER ) {
+				chars[i] = separator;
+			}
+		}
+		return new String(chars, 0, decoded);
+	}
+
+	/**
+	 * Parses the next field as a decimal int without going through a String. The rules are those of
+	 * Integer#parseInt: an optional sign followed by at least one digit, and nothing else.
+	 */
+	public int nextInt() {
+		int start = position;
+		int end = fieldEnd();
+		position = end + 1;
+
+		int i = start;
+		boolean negative = false;
+		if ( i < end && ( line[i] == '-' || line[i] == '+' ) ) {
+			negative = line[i] == '-';
+			i++;
+		}
+		if ( i == end ) {
+			throw numberFormatException(start, end);
+		}
+
+		// accumulate negatively so that Integer.MIN_VALUE doesn't overflow
+		int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		int result = 0;
+		for ( ; i < end; i++ ) {
+			int digit = line[i] - '0';
+			if ( digit < 0 || digit > 9 || result < limit / 10 ) {
+				throw numberFormatException(start, end);
+			}
+			result *= 10;
+			if ( result < limit + digit ) {
+				throw numberFormatException(start, end);
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	private int fieldEnd() {
+		if ( position > length ) {
+			throw new NoSuchElementException("No more fields in line");
+		}
+		for ( int i = position; i < length; i++ ) {
+			if ( line[i] == DELIMITER ) {
+				return i;
+			}
+		}
+		return length;
+	}
+
+	private NumberFormatException numberFormatException(int start, int end) {
+		return new NumberFormatException("For input string: \"" +
+				decoder.decode(line, start, end - start) + "\"");
+	}
+}
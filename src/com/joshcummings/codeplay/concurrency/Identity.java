@@ -1,10 +1,9 @@
 package com.joshcummings.codeplay.concurrency;
 
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
 
 public interface Identity {
-	Integer getId();
+	long getId();
 	
 	String getUsername();
 
@@ -19,6 +18,4 @@ public interface Identity {
 	Integer getAge();
 	
 	List<Address> getAddresses();
-	
-	ReentrantLock getLock();
 }
@@ -2,16 +2,30 @@ package com.joshcummings.codeplay.concurrency;
 
 import java.io.InputStream;
 import java.util.Iterator;
+import java.util.Spliterator;
 
 public class IdentityIterable implements Iterator<Identity>, Iterable<Identity> {
+	// small batches since each identity takes a while to process once it has been read
+	private static final int DEFAULT_BATCH_SIZE = 32;
+	
 	private IdentityReader reader;
 	private InputStream is;
 	private Identity next;
+	private int batchSize;
 
 	public IdentityIterable(InputStream is, IdentityReader reader) {
+		this(is, reader, DEFAULT_BATCH_SIZE);
+	}
+	
+	/**
+	 * 
+	 * @param batchSize - The number of identities read ahead each time a parallel stream splits this source
+	 */
+	public IdentityIterable(InputStream is, IdentityReader reader, int batchSize) {
 		this.reader = reader;
-		this.is = is;
-		next = reader.read(is);
+		this.is = BufferedLineInputStream.wrap(is);
+		this.batchSize = batchSize;
+		next = reader.read(this.is);
 	}
 
 	public boolean hasNext() {
@@ -27,4 +41,9 @@ public class IdentityIterable implements Iterator<Identity>, Iterable<Identity>
 	public Iterator<Identity> iterator() {
 		return this;
 	}
+	
+	@Override
+	public Spliterator<Identity> spliterator() {
+		return new IdentitySpliterator(this, batchSize);
+	}
 }
@@ -0,0 +1,70 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator that hands identities to parallel streams in fixed-size batches.
+ *
+ * The default spliterator for an Iterator splits off batches that start at 1024 elements and grow from
+ * there, which for a slow source like an identity reader means the first worker waits on a thousand
+ * reads before anyone else gets anything. This one reads ahead a configurable number of identities into
+ * an array on each split, so the pool fills up quickly and each task is of a predictable size.
+ *
+ * The source itself has an unknown size, but every batch it splits off is SIZED and SUBSIZED.
+ */
+public class IdentitySpliterator implements Spliterator<Identity> {
+	private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL;
+
+	private final Iterator<Identity> source;
+	private final int batchSize;
+
+	public IdentitySpliterator(Iterator<Identity> source, int batchSize) {
+		if ( batchSize <= 0 ) {
+			throw new IllegalArgumentException("Batch size must be positive");
+		}
+		this.source = source;
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Identity> action) {
+		if ( source.hasNext() ) {
+			action.accept(source.next());
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super Identity> action) {
+		while ( source.hasNext() ) {
+			action.accept(source.next());
+		}
+	}
+
+	@Override
+	public Spliterator<Identity> trySplit() {
+		Object[] batch = new Object[batchSize];
+		int read = 0;
+		while ( read < batchSize && source.hasNext() ) {
+			batch[read++] = source.next();
+		}
+		if ( read == 0 ) {
+			return null;
+		}
+		return Spliterators.spliterator(batch, 0, read, CHARACTERISTICS);
+	}
+
+	@Override
+	public long estimateSize() {
+		return source.hasNext() ? Long.MAX_VALUE : 0;
+	}
+
+	@Override
+	public int characteristics() {
+		return CHARACTERISTICS;
+	}
+}
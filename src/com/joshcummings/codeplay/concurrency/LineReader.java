@@ -1,16 +1,52 @@
 package com.joshcummings.codeplay.concurrency;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 public class LineReader {
+	// cursors are reused line after line, so each thread that reads gets its own
+	private static final ThreadLocal<FieldCursor> FIELDS = ThreadLocal.withInitial(FieldCursor::new);
+	
 	public static String readLine(InputStream is) throws IOException {
-		StringBuilder sb = new StringBuilder();
+		// the buffered source scans for the line break in bulk instead of a virtual call per byte
+		if ( is instanceof BufferedLineInputStream ) {
+			return ((BufferedLineInputStream)is).readLine();
+		}
+		
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
 		int ch = -1;
 		while ( ( ch = is.read() ) != '\n' ) {
 			if ( ch == -1 ) return null;
-			sb.append((char)ch);
+			line.write(ch);
+		}
+		// decoded as a whole so that multi-byte characters come out as one char, not one per byte
+		return new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+	}
+	
+	/**
+	 * Reads the next line into this thread's field cursor. The cursor is only valid until the
+	 * same thread reads another line.
+	 * 
+	 * @return the cursor, or null if there are no more lines
+	 */
+	public static FieldCursor readFields(InputStream is) throws IOException {
+		FieldCursor fields = FIELDS.get();
+		if ( is instanceof LineSource ) {
+			return ((LineSource)is).readLine(fields) ? fields : null;
+		}
+		return readFieldsBytewise(is, fields) ? fields : null;
+	}
+	
+	static boolean readFieldsBytewise(InputStream is, FieldCursor fields) throws IOException {
+		fields.clear();
+		int ch = -1;
+		while ( ( ch = is.read() ) != '\n' ) {
+			if ( ch == -1 ) return false;
+			fields.append((byte)ch);
 		}
-		return sb.toString().trim();
+		fields.trim();
+		return true;
 	}
 }
@@ -0,0 +1,15 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.IOException;
+
+/**
+ * A stream that can hand out a whole line at a time, which LineReader prefers over reading byte by byte.
+ */
+public interface LineSource {
+	/**
+	 * Copies the next line, trimmed, into the given cursor.
+	 * 
+	 * @return false if the stream ended before a line break was found
+	 */
+	boolean readLine(FieldCursor fields) throws IOException;
+}
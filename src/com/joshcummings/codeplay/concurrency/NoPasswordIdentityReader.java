@@ -9,13 +9,13 @@ public class NoPasswordIdentityReader implements IdentityReader {
 	@Override
 	public Identity read(InputStream is) {
 		try {
-			String line = LineReader.readLine(is);
-			if ( line != null ) {
-				String[] parts = line.split("\t");
-				Person p = new Person(parts[0], new char[0],
-						parts[1], parts[2], parts[3],
-						Arrays.asList(new Address(parts[4], parts[5], parts[6], parts[7])),
-						Integer.parseInt(parts[8]));
+			FieldCursor fields = LineReader.readFields(is);
+			if ( fields != null ) {
+				// arguments are evaluated left to right, which is the order of the fields in the line
+				Person p = new Person(fields.nextString(), new char[0],
+						fields.nextString(), fields.nextString(), fields.nextString(),
+						Arrays.asList(new Address(fields.nextString(), fields.nextString(Address.CITIES), fields.nextString(Address.STATES), fields.nextString(Address.ZIP_CODES))),
+						fields.nextInt());
 				return p;
 			} else {
 				return null;
@@ -3,38 +3,46 @@ package com.joshcummings.codeplay.concurrency;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * An identity that never changes once built. Formatting or merging one makes a copy with the change,
+ * under the same ID, and whoever holds the identity swaps the copy in. Anything reading a Person sees
+ * a whole version of it, never one half way through a merge, without taking any locks.
+ */
 public class Person implements Identity {
-	private static Integer ID_SOURCE = 0;
+	private static final IdAllocator IDS = new IdAllocator();
 	
-	private final Integer id;
+	private final long id;
 	private final String username;
 	private final char[] password;
 	
 	private final String name;
-	private String phoneNumber;
-	private String emailAddress;
+	private final String phoneNumber;
+	private final String emailAddress;
 	
 	private final Integer age = 34;
 	
-	private final List<Address> addresses = new ArrayList<>();
-	
-	private final ReentrantLock lock = new ReentrantLock();
+	private final List<Address> addresses;
 	
 	public Person(String username, char[] password, String name,
 			String phoneNumber, String emailAddress, List<Address> addresses,
 			Integer age) {
-		this.id = ++ID_SOURCE;
+		this(IDS.nextId(), username, password, name, phoneNumber, emailAddress,
+				Collections.unmodifiableList(new ArrayList<>(addresses)));
+	}
+
+	private Person(long id, String username, char[] password, String name,
+			String phoneNumber, String emailAddress, List<Address> addresses) {
+		this.id = id;
 		this.username = username;
 		this.password = password;
 		this.name = name;
 		this.phoneNumber = phoneNumber;
 		this.emailAddress = emailAddress;
-		this.addresses.addAll(addresses);
+		this.addresses = addresses;
 	}
 
-	public Integer getId() {
+	public long getId() {
 		return id;
 	}
 	
@@ -54,16 +62,16 @@ public class Person implements Identity {
 		return phoneNumber;
 	}
 
-	public void setPhoneNumber(String phoneNumber) {
-		this.phoneNumber = phoneNumber;
+	public Person withPhoneNumber(String phoneNumber) {
+		return new Person(id, username, password, name, phoneNumber, emailAddress, addresses);
 	}
 	
 	public String getEmailAddress() {
 		return emailAddress;
 	}
 
-	public void setEmailAddress(String emailAddress) {
-		this.emailAddress = emailAddress;
+	public Person withEmailAddress(String emailAddress) {
+		return new Person(id, username, password, name, phoneNumber, emailAddress, addresses);
 	}
 
 	@Override
@@ -72,14 +80,24 @@ public class Person implements Identity {
 	}
 	
 	public List<Address> getAddresses() {
-		return Collections.unmodifiableList(addresses);
+		return addresses;
 	}
 
-	public void addAddresses(List<Address> addresses) {
-		this.addresses.addAll(addresses);
+	public Person withAddresses(List<Address> addresses) {
+		List<Address> all = new ArrayList<>(this.addresses.size() + addresses.size());
+		all.addAll(this.addresses);
+		all.addAll(addresses);
+		return new Person(id, username, password, name, phoneNumber, emailAddress, Collections.unmodifiableList(all));
 	}
-	
-	public ReentrantLock getLock() {
-		return lock;
+
+	/**
+	 * This identity with the incoming one folded into it: contact details it is missing are filled in
+	 * and the incoming addresses are added to its own
+	 */
+	public Person mergedWith(Identity incoming) {
+		return new Person(id, username, password, name,
+				phoneNumber == null ? incoming.getPhoneNumber() : phoneNumber,
+				emailAddress == null ? incoming.getEmailAddress() : emailAddress,
+				addresses).withAddresses(incoming.getAddresses());
 	}
 }
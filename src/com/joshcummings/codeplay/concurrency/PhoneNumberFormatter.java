@@ -1,5 +1,8 @@
 package com.joshcummings.codeplay.concurrency;
 
 public interface PhoneNumberFormatter {
-	void format(Identity identity);
+	/**
+	 * Identities don't change, so this returns a copy with the phone number formatted
+	 */
+	Identity format(Identity identity);
 }
@@ -0,0 +1,115 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An identity source that does its reading on a thread of its own.
+ *
+ * With IdentityIterable, the blocking read happens on whichever thread asks for the next identity, which
+ * in a parallel stream is a pool thread that would rather be computing. Here, a dedicated I/O thread
+ * reads and parses identities into a bounded queue. Consumers only wait when the queue is empty, and the
+ * I/O thread only waits when it is full, so a slow consumer never lets the read-ahead grow without limit.
+ *
+ * Like IdentityIterable, the iterator is meant to be consumed by one thread at a time, which is what a
+ * parallel stream does with its source spliterator. Close it to stop the I/O thread early.
+ */
+public class ReadAheadIdentityIterable implements Iterator<Identity>, Iterable<Identity>, AutoCloseable {
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int DEFAULT_BATCH_SIZE = 32;
+
+	// marks the end of the stream, since the queue can't hold a null
+	private static final Identity END = new BadIdentity();
+
+	private final BlockingQueue<Identity> buffer;
+	private final Thread reading;
+	private final int batchSize;
+
+	private volatile Throwable failure;
+
+	private Identity next;
+
+	public ReadAheadIdentityIterable(InputStream is, IdentityReader reader) {
+		this(is, reader, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 *
+	 * @param capacity - The most identities to read ahead of the consumers
+	 * @param batchSize - The number of identities handed out each time a parallel stream splits this source
+	 */
+	public ReadAheadIdentityIterable(InputStream is, IdentityReader reader, int capacity, int batchSize) {
+		InputStream input = BufferedLineInputStream.wrap(is);
+		this.buffer = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = batchSize;
+		this.reading = new Thread(() -> readAhead(input, reader), "identity-read-ahead");
+		this.reading.setDaemon(true);
+		this.reading.start();
+	}
+
+	private void readAhead(InputStream is, IdentityReader reader) {
+		try {
+			try {
+				Identity identity;
+				while ( ( identity = reader.read(is) ) != null ) {
+					buffer.put(identity);
+				}
+			} catch ( Throwable e ) {
+				// even an Error has to reach the consumers, or they wait on the end forever
+				failure = e;
+			}
+			buffer.put(END);
+		} catch ( InterruptedException e ) {
+			// closed early; nobody is waiting on the rest
+		}
+	}
+
+	public boolean hasNext() {
+		if ( next == null ) {
+			try {
+				next = buffer.take();
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the next identity", e);
+			}
+		}
+		if ( next == END && failure != null ) {
+			throw new IllegalStateException("Reading ahead failed", failure);
+		}
+		return next != END;
+	}
+
+	public Identity next() {
+		if ( !hasNext() ) {
+			throw new NoSuchElementException();
+		}
+		Identity toReturn = next;
+		next = null;
+		return toReturn;
+	}
+
+	public Iterator<Identity> iterator() {
+		return this;
+	}
+
+	@Override
+	public Spliterator<Identity> spliterator() {
+		return new IdentitySpliterator(this, batchSize);
+	}
+
+	/**
+	 * Stops the I/O thread. It may still finish a read that is already under way. A consumer waiting on
+	 * the next identity is told there are no more.
+	 */
+	@Override
+	public void close() {
+		reading.interrupt();
+		buffer.clear();
+		// the I/O thread won't be putting END now, so wake anyone waiting for it
+		buffer.offer(END);
+	}
+}
@@ -0,0 +1,200 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * A stream that remembers the bytes of the record currently being read so that other readers can try
+ * the same record again.
+ *
+ * Unlike copying every byte into a ByteArrayOutputStream and then copying that again for each reader,
+ * this keeps only the current record in a buffer that is reused from one record to the next, and each
+ * replay is a view over that buffer instead of a copy. Recording stops at a configurable limit, so a
+ * record that never ends can't take the heap with it.
+ *
+ * A replaying stream is meant to be used by one thread at a time, typically one per thread per reader.
+ * Views may be handed to other threads; if any were handed out for a record, the next record gets a
+ * fresh buffer so that a straggling view never sees bytes from a different record.
+ */
+public class ReplayingInputStream extends InputStream implements LineSource {
+	private static final int DEFAULT_MAX_RECORD_SIZE = 1024 * 1024;
+
+	private final int maxRecordSize;
+
+	private InputStream is;
+
+	private byte[] buf;
+	private int length;
+	private boolean overflowed;
+	private boolean shared;
+
+	public ReplayingInputStream() {
+		this(DEFAULT_MAX_RECORD_SIZE);
+	}
+
+	/**
+	 *
+	 * @param maxRecordSize - The most bytes that will be remembered for a single record. Replays of a
+	 * 	longer record are cut off at this size
+	 */
+	public ReplayingInputStream(int maxRecordSize) {
+		this.maxRecordSize = maxRecordSize;
+		this.buf = new byte[Math.min(256, maxRecordSize)];
+	}
+
+	/**
+	 * Starts a new record, forgetting the last one
+	 */
+	public ReplayingInputStream begin(InputStream is) {
+		this.is = is;
+		if ( shared ) {
+			buf = new byte[buf.length];
+			shared = false;
+		}
+		length = 0;
+		overflowed = false;
+		return this;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = is.read();
+		if ( b != -1 ) {
+			record(b);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = is.read(b, off, len);
+		if ( n > 0 ) {
+			record(b, off, n);
+		}
+		return n;
+	}
+
+	@Override
+	public boolean readLine(FieldCursor fields) throws IOException {
+		if ( !( is instanceof LineSource ) ) {
+			// read() does the recording for us
+			return LineReader.readFieldsBytewise(this, fields);
+		}
+		if ( !((LineSource)is).readLine(fields) ) {
+			return false;
+		}
+		// the line is recorded trimmed, which every line-based reader would do to it anyway
+		record(fields.bytes(), 0, fields.length());
+		record('\n');
+		return true;
+	}
+
+	private void record(int b) {
+		if ( length == buf.length && !grow(length + 1) ) {
+			return;
+		}
+		buf[length++] = (byte)b;
+	}
+
+	private void record(byte[] b, int off, int len) {
+		if ( length + len > buf.length && !grow(length + len) ) {
+			len = buf.length - length;
+		}
+		System.arraycopy(b, off, buf, length, len);
+		length += len;
+	}
+
+	/**
+	 * @return false if the buffer couldn't grow to the requested size without going past the limit
+	 */
+	private boolean grow(int needed) {
+		int size = Math.min(Math.max(buf.length * 2, needed), maxRecordSize);
+		if ( size > buf.length ) {
+			buf = Arrays.copyOf(buf, size);
+		}
+		if ( size < needed ) {
+			overflowed = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * A view of the current record, starting from its first byte. Each call returns an independent view,
+	 * and none of them copy the record.
+	 */
+	public InputStream replay() {
+		shared = true;
+		return new ReplayView(buf, length);
+	}
+
+	/**
+	 * A copy of the current record, for handing off to something that may outlive it, like a malformed
+	 * identity repository
+	 */
+	public InputStream detach() {
+		return new ByteArrayInputStream(Arrays.copyOf(buf, length));
+	}
+
+	/**
+	 * Whether the current record was longer than what could be remembered
+	 */
+	public boolean isOverflowed() {
+		return overflowed;
+	}
+
+	@Override
+	public void close() throws IOException {
+	}
+
+	private static class ReplayView extends InputStream implements LineSource {
+		private final byte[] buf;
+		private final int limit;
+		private int pos;
+
+		public ReplayView(byte[] buf, int limit) {
+			this.buf = buf;
+			this.limit = limit;
+		}
+
+		@Override
+		public int read() {
+			return pos < limit ? buf[pos++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if ( len == 0 ) {
+				return 0;
+			}
+			if ( pos == limit ) {
+				return -1;
+			}
+			int n = Math.min(len, limit - pos);
+			System.arraycopy(buf, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+
+		@Override
+		public boolean readLine(FieldCursor fields) {
+			for ( int i = pos; i < limit; i++ ) {
+				if ( buf[i] == '\n' ) {
+					fields.reset(buf, pos, i - pos);
+					fields.trim();
+					pos = i + 1;
+					return true;
+				}
+			}
+			pos = limit;
+			return false;
+		}
+
+		@Override
+		public int available() {
+			return limit - pos;
+		}
+	}
+}
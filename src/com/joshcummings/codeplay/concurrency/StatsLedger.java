@@ -20,6 +20,12 @@ public interface StatsLedger {
 			this.lastName = parts[1];
 			this.age = identity.getAge();
 		}
+		
+		public StatsEntry(String firstName, String lastName, Integer age) {
+			this.firstName = firstName;
+			this.lastName = lastName;
+			this.age = age;
+		}
 
 		public String getFirstName() {
 			return firstName;
@@ -0,0 +1,109 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-size, lock-free table of canonical strings, so that the thousands of identities that live in
+ * the same city can share one String for it.
+ *
+ * Unlike String#intern, the table never grows: each value has two slots it may live in, picked by its
+ * hash, and a new value pushes out whichever of the two was used less recently. Values that repeat a
+ * lot stay put, and a field with more distinct values than the table can hold just churns through it
+ * instead of taking over the heap.
+ *
+ * When a field is still in bytes, its hash is worked out from the bytes directly. For ASCII, which is
+ * nearly everything, that is the same as String#hashCode, so a value that is already in the table is
+ * found and returned without ever decoding the bytes or allocating a String.
+ *
+ * Races between threads can only cost a slot its value, never hand back the wrong one, since each slot
+ * is read once and compared in full.
+ */
+public class StringPool {
+	private final AtomicReferenceArray<String> slots;
+	private final int mask;
+
+	/**
+	 *
+	 * @param capacity - Roughly how many distinct values to keep; rounded up to a power of two
+	 */
+	public StringPool(int capacity) {
+		if ( capacity <= 0 ) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+	public String intern(String value) {
+		if ( value == null ) {
+			return null;
+		}
+		int slot = slot(value.hashCode());
+		String canonical = slots.get(slot);
+		if ( value.equals(canonical) ) {
+			return canonical;
+		}
+		canonical = slots.get(slot + 1);
+		if ( value.equals(canonical) ) {
+			return add(slot, canonical);
+		}
+		return add(slot, value);
+	}
+
+	/**
+	 * Returns the canonical String for the given UTF-8 bytes, decoding them only if it isn't already in
+	 * the pool
+	 */
+	public String intern(byte[] bytes, int offset, int length, Utf8Decoder decoder) {
+		int hash = 0;
+		for ( int i = offset; i < offset + length; i++ ) {
+			if ( bytes[i] < 0 ) {
+				// outside of ASCII, the chars have to be known before the hash can be
+				return intern(decoder.decode(bytes, offset, length));
+			}
+			hash = 31 * hash + bytes[i];
+		}
+
+		int slot = slot(hash);
+		String canonical = slots.get(slot);
+		if ( matches(canonical, bytes, offset, length) ) {
+			return canonical;
+		}
+		canonical = slots.get(slot + 1);
+		if ( matches(canonical, bytes, offset, length) ) {
+			return add(slot, canonical);
+		}
+		return add(slot, decoder.decode(bytes, offset, length));
+	}
+
+	/**
+	 * The value most recently asked for goes in the first of its two slots and whatever was there moves
+	 * to the second, evicting the one before it
+	 */
+	private String add(int slot, String value) {
+		String previous = slots.getAndSet(slot, value);
+		if ( previous != null && previous != value ) {
+			slots.lazySet(slot + 1, previous);
+		}
+		return value;
+	}
+
+	private int slot(int hash) {
+		// spread the high bits down, since a small table only looks at the low ones; each value's two
+		// slots are side by side, starting at an even index
+		return ( hash ^ ( hash >>> 16 ) ) & mask & ~1;
+	}
+
+	private static boolean matches(String canonical, byte[] bytes, int offset, int length) {
+		if ( canonical == null || canonical.length() != length ) {
+			return false;
+		}
+		for ( int i = 0; i < length; i++ ) {
+			if ( canonical.charAt(i) != bytes[offset + i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
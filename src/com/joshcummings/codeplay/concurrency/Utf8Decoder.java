@@ -0,0 +1,59 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes UTF-8 bytes into chars in bulk, reusing the same decoder and scratch space every time.
+ *
+ * Most identity data is plain ASCII, so the bytes are first copied straight across for as long as they
+ * stay in the 7-bit range. Only once a multi-byte sequence shows up is the rest handed to a
+ * CharsetDecoder, which is reset rather than recreated. Malformed input is replaced with U+FFFD, the
+ * same as new String(bytes, UTF_8) would do.
+ *
+ * A UTF-8 sequence never decodes to more chars than it has bytes, so a destination as long as the input
+ * is always big enough.
+ *
+ * A decoder is not thread-safe; each FieldCursor has its own.
+ */
+public class Utf8Decoder {
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	private char[] chars = new char[256];
+
+	/**
+	 * Decodes the given bytes into dst, which must have room for at least len chars
+	 *
+	 * @return the number of chars written
+	 */
+	public int decode(byte[] src, int offset, int len, char[] dst) {
+		int end = offset + len;
+		int i = offset;
+		while ( i < end && src[i] >= 0 ) {
+			dst[i - offset] = (char)src[i];
+			i++;
+		}
+		if ( i == end ) {
+			return len;
+		}
+
+		int ascii = i - offset;
+		CharBuffer out = CharBuffer.wrap(dst, ascii, dst.length - ascii);
+		decoder.reset();
+		decoder.decode(ByteBuffer.wrap(src, i, end - i), out, true);
+		decoder.flush(out);
+		return out.position();
+	}
+
+	public String decode(byte[] src, int offset, int len) {
+		if ( chars.length < len ) {
+			chars = new char[Math.max(len, chars.length * 2)];
+		}
+		return new String(chars, 0, decode(src, offset, len, chars));
+	}
+}
@@ -1,11 +1,14 @@
 package com.joshcummings.codeplay.concurrency.aggregation;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -14,16 +17,28 @@ import com.joshcummings.codeplay.concurrency.IdentityService;
 import com.joshcummings.codeplay.concurrency.Person;
 
 public class StreamedIdentityService implements IdentityService {
-	private volatile List<Identity> verifiedIdentities = new ArrayList<>();
+	// copied on write, so searches can walk it without a lock while identities are added
+	private final List<AtomicReference<Identity>> verifiedIdentities = new CopyOnWriteArrayList<>();
+	
+	private static class StoredCandidate extends MergeCandidate {
+		private final AtomicReference<Identity> stored;
+		
+		public StoredCandidate(AtomicReference<Identity> stored, Identity candidate, Integer score) {
+			super(candidate, score);
+			this.stored = stored;
+		}
+	}
 	
 	private ExecutorService es = Executors.newWorkStealingPool();
 	
 	@Override
 	public boolean persistOrUpdateBestMatch(Identity identity) {
-		PriorityQueue<MergeCandidate> candidates = new PriorityQueue<>();
+		// highest score first
+		PriorityQueue<StoredCandidate> candidates = new PriorityQueue<>(Comparator.reverseOrder());
 		
 		// find candidates
-		for (Identity i : verifiedIdentities) {
+		for (AtomicReference<Identity> stored : verifiedIdentities) {
+			Identity i = stored.get();
 			int score = 0;
 			if ( i.getEmailAddress() != null && i.getEmailAddress().equals(identity.getEmailAddress()) ) {
 				score += 50;
@@ -35,35 +50,20 @@ public class StreamedIdentityService implements IdentityService {
 				score += 35;
 			}
 			if ( score >= 50 ) {
-				candidates.offer(new MergeCandidate(i, score));
+				candidates.offer(new StoredCandidate(stored, i, score));
 			}
 		}
 		
-		// pick the best one and lock on it
-		for ( MergeCandidate candidate : candidates ) {
-			Person id = (Person)candidate.getCandidate();
-			if ( id.getLock().tryLock() ) { // we are locking this against other threads processing other identities
-				try {
-					if ( id.getEmailAddress() == null ) {
-						id.setEmailAddress(identity.getEmailAddress());
-					}
-					if ( id.getPhoneNumber() == null ) {
-						id.setPhoneNumber(identity.getPhoneNumber());
-					}
-					id.addAddresses(identity.getAddresses());
-					return true;
-				} catch ( Exception e ) {
-					// rollback, out of scope for this demo
-				} finally {
-					id.getLock().unlock();
-				}
-			}
-		}	
-		
-		synchronized ( verifiedIdentities ) {
-			verifiedIdentities.add(identity);
+		// pick the best one and swap in a merged copy; if another thread merged into it first, this
+		// merges into that version instead
+		StoredCandidate candidate = candidates.peek();
+		if ( candidate != null ) {
+			candidate.stored.updateAndGet(existing -> ((Person)existing).mergedWith(identity));
+			return true;
 		}
 		
+		verifiedIdentities.add(new AtomicReference<>(identity));
+		
 		return false;
 	}
 
@@ -73,7 +73,7 @@ public class StreamedIdentityService implements IdentityService {
 	public Identity getOne(Predicate<Identity> p) {
 		try {
 			return es.submit(
-						() -> verifiedIdentities.parallelStream().filter(p).findAny().get()
+						() -> verifiedIdentities.parallelStream().map(AtomicReference::get).filter(p).findAny().get()
 					).get(); 
 		} catch ( ExecutionException | InterruptedException e ) {
 			Thread.currentThread().interrupt();
@@ -85,7 +85,7 @@ public class StreamedIdentityService implements IdentityService {
 	public List<Identity> search(Predicate<Identity> pred) {
 		try {
 			return es.submit(
-						() -> verifiedIdentities.parallelStream().filter(pred).collect(Collectors.toList())
+						() -> verifiedIdentities.parallelStream().map(AtomicReference::get).filter(pred).collect(Collectors.toList())
 					).get();
 		} catch ( ExecutionException | InterruptedException e ) {
 			Thread.currentThread().interrupt();
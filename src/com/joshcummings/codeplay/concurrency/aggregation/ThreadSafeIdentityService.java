@@ -8,6 +8,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -16,47 +17,35 @@ import com.joshcummings.codeplay.concurrency.IdentityService;
 import com.joshcummings.codeplay.concurrency.Person;
 
 /**
- * A thread-safe identity service that using ReentrantLock on each element instead of on the entire method.
+ * A thread-safe identity service that takes no locks at all. Each stored identity sits in its own atomic
+ * reference, and since identities never change, a merge builds a new version and swaps it in. Searches
+ * see whichever version was there when they looked.
  * 
  *
  */
 public class ThreadSafeIdentityService implements IdentityService {
-	private volatile Queue<Identity> verifiedIdentities = new ConcurrentLinkedQueue<>();
+	private final Queue<AtomicReference<Identity>> verifiedIdentities = new ConcurrentLinkedQueue<>();
 
 	@Override
 	public boolean persistOrUpdateBestMatch(Identity identity) {
-		class BestHolder { MergeCandidate best; }
-		BestHolder is = new BestHolder();
+		AtomicReference<Identity> best = null;
+		int bestScore = 0;
 		
-		for ( Identity i : verifiedIdentities ) {
-			if ( i.getLock().tryLock() ) {
-				try {
-					scoreMatch(identity, i).ifPresent(mergeable -> {
-						if ( is.best == null || mergeable.getScore() > is.best.getScore() ) {
-							if ( is.best != null ) is.best.getCandidate().getLock().unlock();
-							is.best = mergeable;
-							i.getLock().lock(); // get a second lock for the same thread
-						}
-					});
-				} catch ( Exception e ) {
-					// don't really eat!
-				} finally {
-					i.getLock().unlock();
-				}
+		for ( AtomicReference<Identity> stored : verifiedIdentities ) {
+			Optional<MergeCandidate> mergeable = scoreMatch(identity, stored.get());
+			if ( mergeable.isPresent() && mergeable.get().getScore() > bestScore ) {
+				best = stored;
+				bestScore = mergeable.get().getScore();
 			}
 		}	
 		
-		if ( is.best != null ) {
-			try {
-				Person candidate = (Person)is.best.getCandidate();
-				merge((Person)identity, candidate);
-				return true;
-			} finally {
-				is.best.getCandidate().getLock().unlock();
-			}
+		if ( best != null ) {
+			// optimistic: if another thread merged into it in the meantime, merge into its version and try again
+			best.updateAndGet(existing -> ((Person)existing).mergedWith(identity));
+			return true;
 		}
 		
-		verifiedIdentities.add(identity);
+		verifiedIdentities.add(new AtomicReference<>(identity));
 		
 		return false;
 	}
@@ -69,7 +58,7 @@ public class ThreadSafeIdentityService implements IdentityService {
 	public Identity getOne(Predicate<Identity> p) {
 		try {
 			return pool.submit(
-						() -> verifiedIdentities.parallelStream().filter(p).findAny().get()
+						() -> verifiedIdentities.parallelStream().map(AtomicReference::get).filter(p).findAny().get()
 					).get(); 
 		} catch ( ExecutionException | InterruptedException e ) {
 			Thread.currentThread().interrupt();
@@ -81,7 +70,7 @@ public class ThreadSafeIdentityService implements IdentityService {
 	public List<Identity> search(Predicate<Identity> pred) {
 		try {
 			return pool.submit(
-						() -> verifiedIdentities.parallelStream().filter(pred).collect(Collectors.toList())
+						() -> verifiedIdentities.parallelStream().map(AtomicReference::get).filter(pred).collect(Collectors.toList())
 					).get();
 		} catch ( ExecutionException | InterruptedException e ) {
 			Thread.currentThread().interrupt();
@@ -89,8 +78,8 @@ public class ThreadSafeIdentityService implements IdentityService {
 		}
 	}
 	
-	public Queue<Identity> getVerifiedIdentities() {
-		return verifiedIdentities;
+	public List<Identity> getVerifiedIdentities() {
+		return verifiedIdentities.stream().map(AtomicReference::get).collect(Collectors.toList());
 	}
 	
 	private Optional<MergeCandidate> scoreMatch(Identity incoming, Identity existing) {
@@ -111,14 +100,4 @@ public class ThreadSafeIdentityService implements IdentityService {
 		}
 		return Optional.empty();
 	}
-	
-	private void merge(Person incoming, Person existing) {
-		if ( existing.getEmailAddress() == null ) {
-			existing.setEmailAddress(incoming.getEmailAddress());
-		}
-		if ( existing.getPhoneNumber() == null ) {
-			existing.setPhoneNumber(incoming.getPhoneNumber());
-		}
-		existing.addAddresses(incoming.getAddresses());
-	}
 }
@@ -1,22 +1,27 @@
 package com.joshcummings.codeplay.concurrency.dependency;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import com.joshcummings.codeplay.concurrency.AddressVerifier;
 import com.joshcummings.codeplay.concurrency.EmailFormatter;
 import com.joshcummings.codeplay.concurrency.Identity;
-import com.joshcummings.codeplay.concurrency.IdentityIterable;
 import com.joshcummings.codeplay.concurrency.IdentityReader;
 import com.joshcummings.codeplay.concurrency.IdentityService;
 import com.joshcummings.codeplay.concurrency.MalformedIdentityRepository;
 import com.joshcummings.codeplay.concurrency.NoValidAddressesException;
 import com.joshcummings.codeplay.concurrency.PhoneNumberFormatter;
+import com.joshcummings.codeplay.concurrency.ReadAheadIdentityIterable;
 import com.joshcummings.codeplay.concurrency.StatsLedger;
 import com.joshcummings.codeplay.concurrency.StatsLedger.StatsEntry;
+import com.joshcummings.codeplay.concurrency.splitting.MappedFileIdentityReader;
 
 
 /**
@@ -46,27 +51,40 @@ public class CompletableFutureIdentityPipeline {
 	private ExecutorService pool = Executors.newWorkStealingPool();
 
 	public void process(InputStream input) {
-		StreamSupport.stream(
-	            new IdentityIterable(input, identityReader).spliterator(), true)
+		// the reading is done on its own thread so that the stream's workers don't sit blocked on I/O
+		try ( ReadAheadIdentityIterable identities = new ReadAheadIdentityIterable(input, identityReader) ) {
+			process(StreamSupport.stream(identities.spliterator(), true));
+		}
+	}
+	
+	public void process(Path file) throws IOException {
+		process(new MappedFileIdentityReader(identityReader).read(file));
+	}
+	
+	private void process(Stream<Identity> identities) {
+		identities
 			.forEach((identity) -> {
 				System.out.println("Processing identity #" + identity.getId());
 				try {
+					// the formatters each swap in their own copy, retrying if the other got there first
+					AtomicReference<Identity> formatted = new AtomicReference<>(identity);
+
 					CompletableFuture<Void> address = CompletableFuture.runAsync(() ->
 						validateAddresses(identity),
 						pool);
 					
 					CompletableFuture<Void> phoneNumber = CompletableFuture.runAsync(() ->
-						phoneNumberFormatter.format(identity),
+						formatted.updateAndGet(phoneNumberFormatter::format),
 						pool);
 						
 					CompletableFuture<Void> email = CompletableFuture.runAsync(() ->
-						emailFormatter.format(identity),
+						formatted.updateAndGet(emailFormatter::format),
 						pool);
 		
 					CompletableFuture.allOf(address, phoneNumber, email)
 						.thenRunAsync(() -> {
-							if ( !identityService.persistOrUpdateBestMatch(identity) ) {
-								statsLedger.recordEntry(new StatsEntry(identity));
+							if ( !identityService.persistOrUpdateBestMatch(formatted.get()) ) {
+								statsLedger.recordEntry(new StatsEntry(formatted.get()));
 							}
 						}, pool)
 						.exceptionally((ex) -> {
@@ -8,6 +8,7 @@ import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import com.joshcummings.codeplay.concurrency.AddressVerifier;
+import com.joshcummings.codeplay.concurrency.BufferedLineInputStream;
 import com.joshcummings.codeplay.concurrency.EmailFormatter;
 import com.joshcummings.codeplay.concurrency.Identity;
 import com.joshcummings.codeplay.concurrency.IdentityReader;
@@ -46,7 +47,7 @@ public class ContinuationPassingIdentityPipeline {
 	private ExecutorService persistPool = Executors.newWorkStealingPool();
 	
 	public void process(InputStream input, Runnable processCompleted) {
-		read(input, processCompleted, (i) -> {
+		read(BufferedLineInputStream.wrap(input), processCompleted, (i) -> {
 			format(i, this::fail, (i2) -> {
 				persist(i2, this::fail, (i3) -> {
 					statsLedger.recordEntry(new StatsEntry(i3));
@@ -70,11 +71,10 @@ public class ContinuationPassingIdentityPipeline {
 	
 	private void format(Identity identity, BiConsumer<Identity, Throwable> failed, Consumer<Identity> identityFormatted) {
 		verifyPool.submit(() -> {
-			phoneNumberFormatter.format(identity);
-			emailFormatter.format(identity);
+			Identity formatted = emailFormatter.format(phoneNumberFormatter.format(identity));
 			try {
-				validateAddresses(identity);
-				identityFormatted.accept(identity);
+				validateAddresses(formatted);
+				identityFormatted.accept(formatted);
 			} catch ( NoValidAddressesException e ) {
 				failed.accept(identity, e);
 			}
@@ -1,13 +1,18 @@
 package com.joshcummings.codeplay.concurrency.dependency;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import com.joshcummings.codeplay.concurrency.AddressVerifier;
+import com.joshcummings.codeplay.concurrency.Checkpointer;
 import com.joshcummings.codeplay.concurrency.EmailFormatter;
 import com.joshcummings.codeplay.concurrency.Identity;
 import com.joshcummings.codeplay.concurrency.IdentityIterable;
@@ -18,6 +23,7 @@ import com.joshcummings.codeplay.concurrency.NoValidAddressesException;
 import com.joshcummings.codeplay.concurrency.PhoneNumberFormatter;
 import com.joshcummings.codeplay.concurrency.StatsLedger;
 import com.joshcummings.codeplay.concurrency.StatsLedger.StatsEntry;
+import com.joshcummings.codeplay.concurrency.splitting.MappedFileIdentityReader;
 
 /**
  * An identity pipeline that coordinates asynchronous dependencies using CountDownLatch.
@@ -50,30 +56,57 @@ public class CountDownLatchIdentityPipeline {
 	private ExecutorService persistPool = Executors.newWorkStealingPool();
 	
 	public void process(InputStream input) {
-		StreamSupport.stream(new IdentityIterable(input, identityReader).spliterator(), true).forEach((identity) -> {
+		process(StreamSupport.stream(new IdentityIterable(input, identityReader).spliterator(), true), null);
+	}
+
+	// each region of the file is parsed on its own core instead of every thread waiting on one stream
+	public void process(Path file) throws IOException {
+		process(new MappedFileIdentityReader(identityReader).read(file), null);
+	}
+
+	/**
+	 * Processes the file from its last checkpoint, if it has one. Since identities finish out of order
+	 * here, the checkpoint only advances past an identity once everything before it has finished too.
+	 * The final checkpoint is written once the last outstanding identity is persisted.
+	 */
+	public void process(Path file, Path checkpoint) throws IOException {
+		Checkpointer checkpointer = new Checkpointer(file, checkpoint, statsLedger);
+		try ( InputStream input = checkpointer.open() ) {
+			process(StreamSupport.stream(new IdentityIterable(input, checkpointer.track(identityReader)).spliterator(), true), checkpointer);
+		}
+		checkpointer.finish();
+	}
+
+	private void process(Stream<Identity> identities, Checkpointer checkpointer) {
+		identities.forEach((identity) -> {
 			System.out.println("Processing identity #" + identity.getId());
 			try {
 				CountDownLatch cdl = new CountDownLatch(3);
+				// the formatters each swap in their own copy, retrying if the other got there first
+				AtomicReference<Identity> formatted = new AtomicReference<>(identity);
 
 				verifyPool.submit(() -> {
 					validateAddresses(identity);
 					cdl.countDown();
 				});
 				verifyPool.submit(() -> {
-					phoneNumberFormatter.format(identity);
+					formatted.updateAndGet(phoneNumberFormatter::format);
 					cdl.countDown();
 				});
 				verifyPool.submit(() -> {
-					emailFormatter.format(identity);
+					formatted.updateAndGet(emailFormatter::format);
 					cdl.countDown();
 				});
 
 				persistPool.submit(() -> {
+					StatsEntry entry = null;
 					try {
 						// this line will block and wait for the above three calls to finish
 						if ( cdl.await(3000, TimeUnit.MILLISECONDS) ) {
-							if (!identityService.persistOrUpdateBestMatch(identity)) {
-								statsLedger.recordEntry(new StatsEntry(identity));
+							if (!identityService.persistOrUpdateBestMatch(formatted.get())) {
+								StatsEntry recorded = new StatsEntry(formatted.get());
+								statsLedger.recordEntry(recorded);
+								entry = recorded;
 							}
 						} else {
 							// we can read an error message here that is supplied by the verification, 
@@ -82,14 +115,23 @@ public class CountDownLatchIdentityPipeline {
 						}
 					} catch (InterruptedException e) {
 						Thread.currentThread().interrupt();
+					} finally {
+						completed(checkpointer, identity, entry);
 					}
 				});
 			} catch (Exception e) {
 				malformed.addIdentity(identity, e.getMessage());
+				completed(checkpointer, identity, null);
 			}
 		});
 	}
 
+	private void completed(Checkpointer checkpointer, Identity identity, StatsEntry entry) {
+		if ( checkpointer != null ) {
+			checkpointer.completed(identity, entry);
+		}
+	}
+
 	protected void validateAddresses(Identity identity) {
 		addressVerifier.verify(identity.getAddresses());
 
@@ -0,0 +1,171 @@
+package com.joshcummings.codeplay.concurrency.dependency;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-running service that ingests files as they show up in a landing directory.
+ *
+ * Launching a pipeline per file means paying for its thread pools every time. Instead, every file goes
+ * through the one pipeline this service is given, whose pools stay warm between files, and several files
+ * are ingested at once on a small pool of the service's own.
+ *
+ * The number of files in flight--being ingested or waiting to be--is capped. Once the cap is reached,
+ * the watcher stops taking new files until one finishes, so a burst of drops waits in the directory
+ * rather than in memory. A file counts as finished when the ingester returns, so the cap only bounds the
+ * work if the ingester waits for it. CountDownLatchIdentityPipeline and CompletableFutureIdentityPipeline
+ * hand identities to their own pools and return while those are still working through them; with
+ * those, the cap bounds how many files are being read at once, not how much work is queued behind them.
+ *
+ * Files should be written under a name that starts with a dot or ends with .part or .tmp and then
+ * renamed, since a file is picked up as soon as its final name appears.
+ *
+ * A file is remembered by its name and when it was last modified, so dropping a new file under an old
+ * name ingests it again, and it is forgotten once it's deleted. A file that fails to ingest is forgotten
+ * right away, so that it's tried again the next time it's reported.
+ */
+public class DirectoryIngestionService implements AutoCloseable {
+	/**
+	 * What to do with each file, typically a pipeline's process(Path) method. The file stops counting
+	 * against the in-flight limit as soon as this returns, whether or not the pipeline is done with it.
+	 */
+	public interface FileIngester {
+		void ingest(Path file) throws IOException;
+	}
+
+	private final Path directory;
+	private final FileIngester ingester;
+	private final Semaphore inFlight;
+
+	private final ExecutorService pool;
+	private final WatchService watcher;
+	private final Thread watching;
+
+	// a file can be reported more than once, for example by both the initial scan and the watcher
+	private final ConcurrentMap<Path, FileTime> seen = new ConcurrentHashMap<>();
+
+	/**
+	 *
+	 * @param directory - The landing directory to watch
+	 * @param ingester - The shared pipeline to hand each file to. It will be called from several threads
+	 * 	at once
+	 * @param parallelism - How many files to ingest at once
+	 * @param maxInFlight - How many files may be ingesting or queued to ingest at once; at least parallelism
+	 */
+	public DirectoryIngestionService(Path directory, FileIngester ingester, int parallelism, int maxInFlight) throws IOException {
+		if ( parallelism <= 0 || maxInFlight < parallelism ) {
+			throw new IllegalArgumentException("Parallelism must be positive and no more than the in-flight limit");
+		}
+		this.directory = directory;
+		this.ingester = ingester;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.pool = Executors.newFixedThreadPool(parallelism);
+		this.watcher = directory.getFileSystem().newWatchService();
+		directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+		this.watching = new Thread(this::watch, "directory-ingestion-" + directory.getFileName());
+	}
+
+	public void start() {
+		watching.start();
+	}
+
+	private void watch() {
+		try {
+			// anything that landed before we started watching
+			scan();
+			while ( true ) {
+				WatchKey key = watcher.take();
+				for ( WatchEvent<?> event : key.pollEvents() ) {
+					if ( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+						// some events were dropped, so look at everything again
+						scan();
+					} else if ( event.kind() == StandardWatchEventKinds.ENTRY_DELETE ) {
+						seen.remove(directory.resolve((Path)event.context()));
+					} else {
+						schedule(directory.resolve((Path)event.context()));
+					}
+				}
+				if ( !key.reset() ) {
+					throw new IOException("No longer able to watch " + directory);
+				}
+			}
+		} catch ( InterruptedException | ClosedWatchServiceException e ) {
+			// closed
+		} catch ( IOException e ) {
+			e.printStackTrace();
+		}
+	}
+
+	private void scan() throws IOException, InterruptedException {
+		try ( DirectoryStream<Path> files = Files.newDirectoryStream(directory) ) {
+			for ( Path file : files ) {
+				schedule(file);
+			}
+		}
+	}
+
+	private void schedule(Path file) throws InterruptedException {
+		if ( !isReady(file) ) {
+			return;
+		}
+		FileTime modified;
+		try {
+			modified = Files.getLastModifiedTime(file);
+		} catch ( IOException e ) {
+			// gone again already
+			return;
+		}
+		if ( modified.equals(seen.put(file, modified)) ) {
+			return;
+		}
+		// blocks the watcher, and not the pool, when too many files are already in flight
+		inFlight.acquire();
+		pool.submit(() -> {
+			try {
+				ingester.ingest(file);
+			} catch ( Exception e ) {
+				e.printStackTrace();
+				seen.remove(file, modified);
+			} finally {
+				inFlight.release();
+			}
+		});
+	}
+
+	private boolean isReady(Path file) {
+		String name = file.getFileName().toString();
+		return !name.startsWith(".") && !name.endsWith(".part") && !name.endsWith(".tmp") && Files.isRegularFile(file);
+	}
+
+	/**
+	 * Stops watching, then waits for the files already in flight to finish. If interrupted while waiting,
+	 * the files in flight are interrupted as well.
+	 */
+	@Override
+	public void close() throws IOException {
+		watcher.close();
+		watching.interrupt();
+		try {
+			watching.join();
+			pool.shutdown();
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch ( InterruptedException e ) {
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+}
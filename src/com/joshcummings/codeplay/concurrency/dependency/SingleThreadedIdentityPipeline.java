@@ -1,6 +1,9 @@
 package com.joshcummings.codeplay.concurrency.dependency;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import com.joshcummings.codeplay.concurrency.AddressVerifier;
@@ -14,6 +17,7 @@ import com.joshcummings.codeplay.concurrency.NoValidAddressesException;
 import com.joshcummings.codeplay.concurrency.PhoneNumberFormatter;
 import com.joshcummings.codeplay.concurrency.StatsLedger;
 import com.joshcummings.codeplay.concurrency.StatsLedger.StatsEntry;
+import com.joshcummings.codeplay.concurrency.splitting.MappedFileIdentityReader;
 
 
 /**
@@ -41,18 +45,28 @@ public class SingleThreadedIdentityPipeline {
 	}
 	
 	public void process(InputStream input) {
-		StreamSupport.stream(
-	            new IdentityIterable(input, identityReader).spliterator(), true)
+		process(StreamSupport.stream(
+	            new IdentityIterable(input, identityReader).spliterator(), true));
+	}
+	
+	/**
+	 * Parses the file in memory-mapped regions so that reading, too, happens on every core.
+	 */
+	public void process(Path file) throws IOException {
+		process(new MappedFileIdentityReader(identityReader).read(file));
+	}
+	
+	private void process(Stream<Identity> identities) {
+		identities
 		.forEach((identity) ->
 		{
 			System.out.println("Processing identity #" + identity.getId());
 			try {
 				validateAddresses(identity);
-				phoneNumberFormatter.format(identity);
-				emailFormatter.format(identity);
+				Identity formatted = emailFormatter.format(phoneNumberFormatter.format(identity));
 	
-				if ( !identityService.persistOrUpdateBestMatch(identity) ) {
-					statsLedger.recordEntry(new StatsEntry(identity));
+				if ( !identityService.persistOrUpdateBestMatch(formatted) ) {
+					statsLedger.recordEntry(new StatsEntry(formatted));
 				}
 			} catch ( Exception e ) {
 				malformed.addIdentity(identity, e.getMessage());
@@ -1,8 +1,12 @@
 package com.joshcummings.codeplay.concurrency.single;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 
 import com.joshcummings.codeplay.concurrency.AddressVerifier;
+import com.joshcummings.codeplay.concurrency.BufferedLineInputStream;
+import com.joshcummings.codeplay.concurrency.Checkpointer;
 import com.joshcummings.codeplay.concurrency.EmailFormatter;
 import com.joshcummings.codeplay.concurrency.Identity;
 import com.joshcummings.codeplay.concurrency.IdentityReader;
@@ -34,21 +38,41 @@ public class IdentityPipeline {
 	}
 	
 	public void process(InputStream input) {
+		process(BufferedLineInputStream.wrap(input), identityReader, null);
+	}
+	
+	/**
+	 * Processes the file, starting from its last checkpoint if it has one, and checkpointing as it goes
+	 */
+	public void process(Path file, Path checkpoint) throws IOException {
+		Checkpointer checkpointer = new Checkpointer(file, checkpoint, statsLedger);
+		try ( InputStream input = checkpointer.open() ) {
+			process(input, checkpointer.track(identityReader), checkpointer);
+		}
+		checkpointer.finish();
+	}
+	
+	private void process(InputStream input, IdentityReader reader, Checkpointer checkpointer) {
 		Identity i;
-		while ( ( i = readIdentity(input) ) != null ){
+		while ( ( i = reader.read(input) ) != null ){
 			final Identity identity = i;
+			StatsEntry entry = null;
 			try {
 				validateAddresses(identity);
 				
-				phoneNumberFormatter.format(identity);
-				emailFormatter.format(identity);
+				Identity formatted = emailFormatter.format(phoneNumberFormatter.format(identity));
 
-				if ( !identityService.persistOrUpdateBestMatch(identity) ) {
-					statsLedger.recordEntry(new StatsEntry(identity));
+				if ( !identityService.persistOrUpdateBestMatch(formatted) ) {
+					StatsEntry recorded = new StatsEntry(formatted);
+					statsLedger.recordEntry(recorded);
+					entry = recorded;
 				}
 			} catch ( Exception e ) {
 				malformed.addIdentity(identity, e.getMessage());
 			}
+			if ( checkpointer != null ) {
+				checkpointer.completed(identity, entry);
+			}
 		}
 	}
 	
@@ -59,8 +83,4 @@ public class IdentityPipeline {
 			throw new NoValidAddressesException();
 		}
 	}
-	
-	private Identity readIdentity(InputStream is) {
-		return identityReader.read(is);
-	}
 }
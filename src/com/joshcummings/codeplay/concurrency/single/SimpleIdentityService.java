@@ -1,6 +1,7 @@
 package com.joshcummings.codeplay.concurrency.single;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.function.Predicate;
@@ -15,10 +16,12 @@ public class SimpleIdentityService implements IdentityService {
 	private static class MergeCandidate implements Comparable<MergeCandidate> {
 		private final Identity candidate;
 		private final Integer score;
+		private final int index;
 		
-		public MergeCandidate(Identity candidate, Integer score) {
+		public MergeCandidate(Identity candidate, Integer score, int index) {
 			this.candidate = candidate;
 			this.score = score;
+			this.index = index;
 		}
 		public Identity getCandidate() {
 			return candidate;
@@ -31,10 +34,12 @@ public class SimpleIdentityService implements IdentityService {
 	
 	@Override
 	public boolean persistOrUpdateBestMatch(Identity identity) {
-		PriorityQueue<MergeCandidate> candidates = new PriorityQueue<>();
+		// highest score first
+		PriorityQueue<MergeCandidate> candidates = new PriorityQueue<>(Comparator.reverseOrder());
 		
 		// find candidates
-		for (Identity i : verifiedIdentities) {
+		for ( int index = 0; index < verifiedIdentities.size(); index++ ) {
+			Identity i = verifiedIdentities.get(index);
 			int score = 0;
 			if ( i.getEmailAddress() != null && i.getEmailAddress().equals(identity.getEmailAddress()) ) {
 				score += 50;
@@ -46,29 +51,16 @@ public class SimpleIdentityService implements IdentityService {
 				score += 35;
 			}
 			if ( score >= 50 ) {
-				candidates.offer(new MergeCandidate(i, score));
+				candidates.offer(new MergeCandidate(i, score, index));
 			}
 		}
 		
-		// pick the best one and lock on it
-		for ( MergeCandidate candidate : candidates ) {
+		// pick the best one and put the merged copy in its place
+		MergeCandidate candidate = candidates.peek();
+		if ( candidate != null ) {
 			Person id = (Person)candidate.getCandidate();
-			if ( id.getLock().tryLock() ) {
-				try {
-					if ( id.getEmailAddress() == null ) {
-						id.setEmailAddress(identity.getEmailAddress());
-					}
-					if ( id.getPhoneNumber() == null ) {
-						id.setPhoneNumber(identity.getPhoneNumber());
-					}
-					id.addAddresses(identity.getAddresses());
-					return true;
-				} catch ( Exception e ) {
-					// rollback, out of scope
-				} finally {
-					id.getLock().unlock();
-				}
-			}
+			verifiedIdentities.set(candidate.index, id.mergedWith(identity));
+			return true;
 		}
 		
 		verifiedIdentities.add(identity);
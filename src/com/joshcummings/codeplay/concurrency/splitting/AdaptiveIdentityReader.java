@@ -0,0 +1,163 @@
+package com.joshcummings.codeplay.concurrency.splitting;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import com.joshcummings.codeplay.concurrency.BadIdentity;
+import com.joshcummings.codeplay.concurrency.Identity;
+import com.joshcummings.codeplay.concurrency.IdentityReader;
+import com.joshcummings.codeplay.concurrency.MalformedIdentityRepository;
+import com.joshcummings.codeplay.concurrency.ReplayingInputStream;
+
+/**
+ * A multi-strategy reader that keeps reordering its readers based on how they have been doing lately.
+ *
+ * Each reader's recent attempts are kept in a sliding window of hits and parse times. Every so often,
+ * the readers are sorted by their expected cost of getting to a good identity--average parse time
+ * divided by hit rate--and the cheapest likely-successful one becomes the reader that runs inline. The
+ * rest are only scattered when it misses. A mixed feed dominated by what used to be the secondary format
+ * therefore stops paying for a failed primary attempt on most records.
+ *
+ */
+public class AdaptiveIdentityReader extends MultiStrategyIdentityReader {
+	private static final int DEFAULT_WINDOW = 256;
+	private static final int DEFAULT_REORDER_EVERY = 32;
+
+	private final List<Strategy> strategies;
+	private final int reorderEvery;
+
+	private final AtomicInteger reads = new AtomicInteger();
+
+	private volatile List<Strategy> order;
+
+	public AdaptiveIdentityReader(List<IdentityReader> readers, ScatterGatherer scatterGatherer, MalformedIdentityRepository repository) {
+		this(readers, scatterGatherer, repository, DEFAULT_WINDOW, DEFAULT_REORDER_EVERY);
+	}
+
+	/**
+	 *
+	 * @param readers - The candidate readers; this is also the order used until there is data to go on
+	 * @param scatterGatherer - How to try the rest of the readers when the inline one misses
+	 * @param repository - Where to send records that no reader could make sense of
+	 * @param window - How many of each reader's most recent attempts to consider
+	 * @param reorderEvery - How many records to read between reorderings
+	 */
+	public AdaptiveIdentityReader(List<IdentityReader> readers, ScatterGatherer scatterGatherer,
+			MalformedIdentityRepository repository, int window, int reorderEvery) {
+		super(readers, scatterGatherer, repository);
+		this.strategies = readers.stream().map(reader -> new Strategy(reader, window)).collect(Collectors.toList());
+		this.reorderEvery = reorderEvery;
+		this.order = new ArrayList<>(strategies);
+	}
+
+	@Override
+	public Identity read(InputStream is) {
+		ReplayingInputStream record = records.get();
+		while ( true ) {
+			record.begin(is);
+			List<Strategy> order = this.order;
+
+			Identity result;
+			synchronized ( is ) {
+				result = order.get(0).read(record);
+			}
+			if ( result == null ) {
+				return null;
+			}
+
+			if ( reads.incrementAndGet() % reorderEvery == 0 ) {
+				reorder();
+			}
+
+			if ( isOkay(result) ) {
+				return result;
+			}
+
+			if ( order.size() > 1 ) {
+				result = scatterGatherer.go(new ReaderScatterer(record, order.subList(1, order.size())), new IdentityGatherer());
+				if ( result != null && isOkay(result) ) {
+					return result;
+				}
+			}
+
+			malformed.addIdentity(record.detach(), "All readers failed :(");
+		}
+	}
+
+	/**
+	 * The readers in the order they are currently being tried
+	 */
+	public List<IdentityReader> getOrder() {
+		return order.stream().map(strategy -> strategy.reader).collect(Collectors.toList());
+	}
+
+	private void reorder() {
+		List<Strategy> reordered = new ArrayList<>(strategies);
+		// the sort is stable, so readers that look the same stay in their preferred order
+		reordered.sort(Comparator.comparingDouble(Strategy::expectedCost));
+		this.order = reordered;
+	}
+
+	/**
+	 * A reader that remembers how its most recent attempts went.
+	 *
+	 * The window is written to without any locking, so a reordering may see a slot that is mid-update.
+	 * That is fine for our purposes since the numbers are only used to guess at a good order.
+	 */
+	private static class Strategy implements IdentityReader {
+		private final IdentityReader reader;
+
+		private final long[] nanos;
+		private final boolean[] hits;
+		private final AtomicLong attempts = new AtomicLong();
+
+		public Strategy(IdentityReader reader, int window) {
+			this.reader = reader;
+			this.nanos = new long[window];
+			this.hits = new boolean[window];
+		}
+
+		@Override
+		public Identity read(InputStream is) {
+			long start = System.nanoTime();
+			Identity result = reader.read(is);
+			long elapsed = System.nanoTime() - start;
+
+			// null means the stream is over, which says nothing about this reader
+			if ( result != null ) {
+				int slot = (int)( attempts.getAndIncrement() % nanos.length );
+				nanos[slot] = elapsed;
+				hits[slot] = !(result instanceof BadIdentity);
+			}
+			return result;
+		}
+
+		/**
+		 * The average time it takes this reader to produce a good identity. A reader that hasn't been
+		 * tried yet goes to the back; it will still be tried whenever the readers ahead of it miss.
+		 */
+		public double expectedCost() {
+			int n = (int)Math.min(attempts.get(), nanos.length);
+			if ( n == 0 ) {
+				return Double.MAX_VALUE;
+			}
+			long total = 0;
+			int successes = 0;
+			for ( int i = 0; i < n; i++ ) {
+				total += nanos[i];
+				if ( hits[i] ) {
+					successes++;
+				}
+			}
+			double averageNanos = (double)total / n;
+			// smoothed so that a few misses in a row don't make a reader look infinitely expensive
+			double hitRate = ( successes + 1d ) / ( n + 2d );
+			return averageNanos / hitRate;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package com.joshcummings.codeplay.concurrency.splitting;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses the output of BlockGzipOutputStream with several members being inflated at once.
+ *
+ * Reading the compressed bytes is cheap compared to inflating them, so this stream does the reading
+ * itself, one whole member at a time using the size in each member's header, and hands each member to a
+ * pool to inflate. The inflated blocks come back in the order they were submitted, so whoever reads
+ * from this stream--typically a BufferedLineInputStream in front of the identity readers--sees the
+ * original bytes in their original order while the next several blocks are already being inflated.
+ *
+ * A gzip file that wasn't written with a block index is still read, just with a regular GZIPInputStream.
+ *
+ * Like other InputStreams that don't say otherwise, this one is meant to be read by one thread at a time.
+ */
+public class BlockGzipInputStream extends InputStream {
+	private static final int FHCRC = 2;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private final InputStream source;
+	private final ExecutorService pool;
+	private final int readAhead;
+
+	private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+	private boolean exhausted;
+	private InputStream unindexed;
+
+	private byte[] block = new byte[0];
+	private int pos;
+
+	public BlockGzipInputStream(InputStream source) {
+		this(source, ForkJoinPool.commonPool(), 2 * ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	/**
+	 *
+	 * @param source - The compressed bytes
+	 * @param pool - Where to inflate the members
+	 * @param readAhead - How many members to have inflating at once; twice the number of threads in the
+	 * 	pool keeps the pool busy while the reader works through a finished block
+	 */
+	public BlockGzipInputStream(InputStream source, ExecutorService pool, int readAhead) {
+		if ( readAhead <= 0 ) {
+			throw new IllegalArgumentException("Read-ahead must be positive");
+		}
+		this.source = source;
+		this.pool = pool;
+		this.readAhead = readAhead;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if ( pos == block.length && !nextBlock() ) {
+			return unindexed == null ? -1 : unindexed.read();
+		}
+		return block[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if ( len == 0 ) {
+			return 0;
+		}
+		if ( pos == block.length && !nextBlock() ) {
+			return unindexed == null ? -1 : unindexed.read(b, off, len);
+		}
+		int n = Math.min(len, block.length - pos);
+		System.arraycopy(block, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return block.length - pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for ( Future<byte[]> inflating : pending ) {
+			inflating.cancel(true);
+		}
+		pending.clear();
+		if ( unindexed != null ) {
+			unindexed.close();
+		} else {
+			source.close();
+		}
+	}
+
+	private boolean nextBlock() throws IOException {
+		// skip over any empty members
+		do {
+			submit();
+			Future<byte[]> next = pending.poll();
+			if ( next == null ) {
+				return false;
+			}
+			try {
+				block = next.get();
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a block to inflate");
+			} catch ( ExecutionException e ) {
+				throw new IOException("Failed to inflate block", e.getCause());
+			}
+			pos = 0;
+		} while ( block.length == 0 );
+		submit();
+		return true;
+	}
+
+	/**
+	 * Keeps up to readAhead members inflating
+	 */
+	private void submit() throws IOException {
+		while ( !exhausted && pending.size() < readAhead ) {
+			byte[] member = readMember();
+			if ( member == null ) {
+				exhausted = true;
+			} else {
+				pending.add(pool.submit(() -> inflate(member)));
+			}
+		}
+	}
+
+	/**
+	 * Reads the next whole member from the source, or returns null at the end of the stream. If the very
+	 * first member has no index, the whole stream is handed to a GZIPInputStream instead.
+	 */
+	private byte[] readMember() throws IOException {
+		byte[] header = new byte[BlockGzipOutputStream.HEADER_SIZE + 2];
+		int read = readFully(source, header, 0, BlockGzipOutputStream.HEADER_SIZE);
+		if ( read == 0 ) {
+			return null;
+		}
+		if ( read < BlockGzipOutputStream.HEADER_SIZE || ( header[0] & 0xff ) != 0x1f || ( header[1] & 0xff ) != 0x8b ) {
+			throw new ZipException("Not in gzip format");
+		}
+
+		int memberSize = -1;
+		int headerSize = BlockGzipOutputStream.HEADER_SIZE;
+		byte[] extra = new byte[0];
+		if ( ( header[3] & BlockGzipOutputStream.FEXTRA ) != 0 ) {
+			if ( readFully(source, header, headerSize, 2) < 2 ) {
+				throw new EOFException("Unexpected end of gzip header");
+			}
+			extra = new byte[( header[headerSize] & 0xff ) | ( header[headerSize + 1] & 0xff ) << 8];
+			if ( readFully(source, extra, 0, extra.length) < extra.length ) {
+				throw new EOFException("Unexpected end of gzip header");
+			}
+			headerSize += 2;
+			memberSize = memberSize(extra);
+		}
+
+		if ( memberSize == -1 ) {
+			if ( !pending.isEmpty() || block.length > 0 ) {
+				throw new ZipException("Gzip member has no block index");
+			}
+			byte[] consumed = concat(header, headerSize, extra);
+			unindexed = new GZIPInputStream(new SequenceInputStream(new ByteArrayInputStream(consumed), source));
+			return null;
+		}
+
+		int start = headerSize + extra.length;
+		// a corrupt index would otherwise have us allocate whatever it says
+		if ( memberSize < start + 8 || memberSize > BlockGzipOutputStream.maxMemberSize(BlockGzipOutputStream.MAX_BLOCK_SIZE) ) {
+			throw new ZipException("Gzip member has a bad block index");
+		}
+		byte[] member = Arrays.copyOf(concat(header, headerSize, extra), memberSize);
+		if ( readFully(source, member, start, memberSize - start) < memberSize - start ) {
+			throw new EOFException("Unexpected end of gzip member");
+		}
+		return member;
+	}
+
+	private static int memberSize(byte[] extra) {
+		int i = 0;
+		while ( i + 4 <= extra.length ) {
+			int length = ( extra[i + 2] & 0xff ) | ( extra[i + 3] & 0xff ) << 8;
+			if ( extra[i] == BlockGzipOutputStream.INDEX_ID1 && extra[i + 1] == BlockGzipOutputStream.INDEX_ID2 && length == 4 ) {
+				return readIntLE(extra, i + 4);
+			}
+			i += 4 + length;
+		}
+		return -1;
+	}
+
+	private static byte[] inflate(byte[] member) throws IOException {
+		int flags = member[3];
+		int at = BlockGzipOutputStream.HEADER_SIZE;
+		if ( ( flags & BlockGzipOutputStream.FEXTRA ) != 0 ) {
+			at += 2 + ( ( member[at] & 0xff ) | ( member[at + 1] & 0xff ) << 8 );
+		}
+		if ( ( flags & FNAME ) != 0 ) {
+			while ( member[at++] != 0 );
+		}
+		if ( ( flags & FCOMMENT ) != 0 ) {
+			while ( member[at++] != 0 );
+		}
+		if ( ( flags & FHCRC ) != 0 ) {
+			at += 2;
+		}
+
+		int trailer = member.length - 8;
+		int inflatedSize = readIntLE(member, trailer + 4);
+		if ( inflatedSize < 0 || inflatedSize > BlockGzipOutputStream.MAX_BLOCK_SIZE ) {
+			throw new ZipException("Gzip member claims to inflate to " + Integer.toUnsignedString(inflatedSize) + " bytes");
+		}
+		byte[] inflated = new byte[inflatedSize];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(member, at, trailer - at);
+			int size = 0;
+			while ( !inflater.finished() ) {
+				int n = inflater.inflate(inflated, size, inflated.length - size);
+				if ( n == 0 && ( inflater.needsInput() || inflater.needsDictionary() || size == inflated.length ) ) {
+					throw new ZipException("Gzip member is corrupt");
+				}
+				size += n;
+			}
+		} catch ( DataFormatException e ) {
+			throw new ZipException(e.getMessage());
+		} finally {
+			inflater.end();
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(inflated);
+		if ( (int)crc.getValue() != readIntLE(member, trailer) ) {
+			throw new ZipException("Gzip member failed its CRC check");
+		}
+		return inflated;
+	}
+
+	private static byte[] concat(byte[] header, int headerSize, byte[] extra) {
+		byte[] bytes = Arrays.copyOf(header, headerSize + extra.length);
+		System.arraycopy(extra, 0, bytes, headerSize, extra.length);
+		return bytes;
+	}
+
+	private static int readFully(InputStream is, byte[] b, int off, int len) throws IOException {
+		int read = 0;
+		while ( read < len ) {
+			int n = is.read(b, off + read, len - read);
+			if ( n == -1 ) {
+				break;
+			}
+			read += n;
+		}
+		return read;
+	}
+
+	private static int readIntLE(byte[] b, int at) {
+		return ( b[at] & 0xff ) | ( b[at + 1] & 0xff ) << 8 | ( b[at + 2] & 0xff ) << 16 | ( b[at + 3] & 0xff ) << 24;
+	}
+}
@@ -0,0 +1,154 @@
+package com.joshcummings.codeplay.concurrency.splitting;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses a stream as a series of independent gzip members, each of which records its own size.
+ *
+ * Any gzip tool will read the output as one ordinary gzip file, since a gzip file may be made of several
+ * members concatenated together. What a plain gzip stream doesn't offer is a way to find where the next
+ * member starts without inflating the current one. So every member written here carries an "IX" extra
+ * field holding the length of the whole member, which is the index that BlockGzipInputStream uses to
+ * hand each member to a different thread.
+ */
+public class BlockGzipOutputStream extends OutputStream {
+	static final int HEADER_SIZE = 10;
+	static final int FEXTRA = 4;
+	static final byte INDEX_ID1 = 'I';
+	static final byte INDEX_ID2 = 'X';
+
+	// XLEN, then the subfield's two id bytes, its length, and the member size
+	private static final int EXTRA_SIZE = 2 + 2 + 2 + 4;
+	private static final int TRAILER_SIZE = 8;
+
+	private static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+	// the reader holds a whole block in memory, so it won't believe a member that claims to be larger
+	static final int MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+
+	private final OutputStream os;
+	private final byte[] block;
+	private int length;
+
+	private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+	private final CRC32 crc = new CRC32();
+	private byte[] compressed;
+
+	public BlockGzipOutputStream(OutputStream os) {
+		this(os, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 *
+	 * @param os - Where to write the members
+	 * @param blockSize - How many uncompressed bytes to put in each member. Smaller blocks spread the
+	 * 	work more evenly across threads, larger ones compress better
+	 */
+	public BlockGzipOutputStream(OutputStream os, int blockSize) {
+		if ( blockSize <= 0 || blockSize > MAX_BLOCK_SIZE ) {
+			throw new IllegalArgumentException("Block size must be positive and at most " + MAX_BLOCK_SIZE);
+		}
+		this.os = os;
+		this.block = new byte[blockSize];
+		this.compressed = new byte[maxCompressedSize(blockSize)];
+	}
+
+	// deflate falls back to stored blocks for data that won't compress, which adds a few bytes per 16K
+	private static int maxCompressedSize(int blockSize) {
+		return blockSize + blockSize / 8 + 64;
+	}
+
+	/**
+	 * The largest a whole member can be, for a block of the given size
+	 */
+	static int maxMemberSize(int blockSize) {
+		return HEADER_SIZE + EXTRA_SIZE + maxCompressedSize(blockSize) + TRAILER_SIZE;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if ( length == block.length ) {
+			writeMember();
+		}
+		block[length++] = (byte)b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while ( len > 0 ) {
+			if ( length == block.length ) {
+				writeMember();
+			}
+			int n = Math.min(len, block.length - length);
+			System.arraycopy(b, off, block, length, n);
+			length += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Ends the current member early and flushes it to the underlying stream
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeMember();
+		os.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			deflater.end();
+			os.close();
+		}
+	}
+
+	private void writeMember() throws IOException {
+		if ( length == 0 ) {
+			return;
+		}
+
+		deflater.reset();
+		deflater.setInput(block, 0, length);
+		deflater.finish();
+		int size = 0;
+		while ( !deflater.finished() ) {
+			if ( size == compressed.length ) {
+				compressed = Arrays.copyOf(compressed, compressed.length * 2);
+			}
+			size += deflater.deflate(compressed, size, compressed.length - size);
+		}
+
+		crc.reset();
+		crc.update(block, 0, length);
+
+		int memberSize = HEADER_SIZE + EXTRA_SIZE + size + TRAILER_SIZE;
+		byte[] header = {
+				0x1f, (byte)0x8b, Deflater.DEFLATED, FEXTRA,
+				0, 0, 0, 0, // no modification time
+				0, (byte)255, // no extra flags, unknown OS
+				EXTRA_SIZE - 2, 0,
+				INDEX_ID1, INDEX_ID2, 4, 0,
+				(byte)memberSize, (byte)( memberSize >>> 8 ), (byte)( memberSize >>> 16 ), (byte)( memberSize >>> 24 )
+		};
+		os.write(header);
+		os.write(compressed, 0, size);
+		writeIntLE((int)crc.getValue());
+		writeIntLE(length);
+
+		length = 0;
+	}
+
+	private void writeIntLE(int value) throws IOException {
+		os.write(value);
+		os.write(value >>> 8);
+		os.write(value >>> 16);
+		os.write(value >>> 24);
+	}
+}
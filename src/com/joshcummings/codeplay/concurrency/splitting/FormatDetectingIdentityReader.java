@@ -0,0 +1,141 @@
+package com.joshcummings.codeplay.concurrency.splitting;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.joshcummings.codeplay.concurrency.Identity;
+import com.joshcummings.codeplay.concurrency.IdentityReader;
+import com.joshcummings.codeplay.concurrency.MalformedIdentityRepository;
+import com.joshcummings.codeplay.concurrency.ReplayingInputStream;
+
+/**
+ * A multi-strategy reader that figures out the format of the stream once instead of on every record.
+ *
+ * For the first few records, each reader is tried in order, and the first to succeed gets the credit,
+ * just as it would have with the regular multi-strategy approach. Once enough records have been sampled,
+ * the reader with the most credit is pinned and tried first on every record after that. Only when the
+ * pinned reader rejects a record are the others scattered, so a file that is entirely in one layout
+ * no longer pays for a failed parse and a fan-out on every line.
+ *
+ */
+public class FormatDetectingIdentityReader extends MultiStrategyIdentityReader {
+	private static final int DEFAULT_SAMPLE_SIZE = 100;
+
+	private final List<IdentityReader> readers;
+	private final int sampleSize;
+
+	private final AtomicInteger sampled = new AtomicInteger();
+	private final AtomicIntegerArray credits;
+
+	private volatile IdentityReader pinned;
+	private volatile List<IdentityReader> others;
+
+	public FormatDetectingIdentityReader(List<IdentityReader> readers, ScatterGatherer scatterGatherer, MalformedIdentityRepository repository) {
+		this(readers, scatterGatherer, repository, DEFAULT_SAMPLE_SIZE);
+	}
+
+	/**
+	 *
+	 * @param readers - The candidate readers, in order of preference
+	 * @param scatterGatherer - How to try the other readers when the pinned one rejects a record
+	 * @param repository - Where to send records that no reader could make sense of
+	 * @param sampleSize - How many records to look at before pinning a reader
+	 */
+	public FormatDetectingIdentityReader(List<IdentityReader> readers, ScatterGatherer scatterGatherer,
+			MalformedIdentityRepository repository, int sampleSize) {
+		super(readers, scatterGatherer, repository);
+		this.readers = readers;
+		this.sampleSize = sampleSize;
+		this.credits = new AtomicIntegerArray(readers.size());
+	}
+
+	@Override
+	public Identity read(InputStream is) {
+		if ( pinned == null ) {
+			return sample(is);
+		}
+
+		ReplayingInputStream record = records.get();
+		while ( true ) {
+			record.begin(is);
+			Identity result;
+			synchronized ( is ) {
+				result = pinned.read(record);
+			}
+			if ( result == null || isOkay(result) ) {
+				return result;
+			}
+
+			if ( !others.isEmpty() ) {
+				result = scatterGatherer.go(new ReaderScatterer(record, others), new IdentityGatherer());
+				if ( result != null && isOkay(result) ) {
+					return result;
+				}
+			}
+
+			malformed.addIdentity(record.detach(), "All readers failed :(");
+		}
+	}
+
+	/**
+	 * Which reader, if any, has been pinned for the rest of the stream
+	 */
+	public Optional<IdentityReader> getDetectedReader() {
+		return Optional.ofNullable(pinned);
+	}
+
+	private Identity sample(InputStream is) {
+		ReplayingInputStream record = records.get();
+		while ( true ) {
+			record.begin(is);
+			Identity result;
+			synchronized ( is ) {
+				result = readers.get(0).read(record);
+			}
+			if ( result == null ) {
+				return null;
+			}
+
+			// only the first reader running out means the end of the stream; any other coming back empty,
+			// say on the cut-short replay of an oversized record, just didn't recognize it
+			int which = 0;
+			while ( ( result == null || !isOkay(result) ) && ++which < readers.size() ) {
+				result = readers.get(which).read(record.replay());
+			}
+
+			if ( which < readers.size() ) {
+				credits.incrementAndGet(which);
+			}
+			if ( sampled.incrementAndGet() == sampleSize ) {
+				pin();
+			}
+
+			if ( which < readers.size() ) {
+				return result;
+			}
+
+			malformed.addIdentity(record.detach(), "All readers failed :(");
+		}
+	}
+
+	private void pin() {
+		int best = 0;
+		for ( int i = 1; i < readers.size(); i++ ) {
+			if ( credits.get(i) > credits.get(best) ) {
+				best = i;
+			}
+		}
+
+		// if nothing could be read, there's no format to speak of, so stay with the sampling strategy
+		if ( credits.get(best) > 0 ) {
+			List<IdentityReader> others = new ArrayList<>(readers);
+			others.remove(best);
+			this.others = others;
+			this.pinned = readers.get(best);
+		}
+	}
+}
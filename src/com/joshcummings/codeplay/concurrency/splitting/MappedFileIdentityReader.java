@@ -0,0 +1,153 @@
+package com.joshcummings.codeplay.concurrency.splitting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.joshcummings.codeplay.concurrency.Identity;
+import com.joshcummings.codeplay.concurrency.IdentityIterable;
+import com.joshcummings.codeplay.concurrency.IdentityReader;
+
+/**
+ * An example of splitting the input itself instead of the work done on each record.
+ *
+ * This class memory-maps a file, cuts it into regions that begin and end on line boundaries, and gives
+ * each region its own stream. Since no two threads share a stream, each region can be parsed on its own
+ * core without any of the readers serializing on a single InputStream.
+ *
+ */
+public class MappedFileIdentityReader {
+	// a single mapping can't be larger than Integer.MAX_VALUE, and a region can run a line past its
+	// nominal end, so regions are kept comfortably under that
+	private static final long MAX_REGION_SIZE = 1L << 30;
+
+	private final IdentityReader reader;
+	private final int regions;
+
+	public MappedFileIdentityReader(IdentityReader reader) {
+		this(reader, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 *
+	 * @param reader - The strategy used to parse each record. It will be called concurrently, though
+	 * 	never with the same stream from two threads
+	 * @param regions - The number of regions to cut the file into; typically the number of cores
+	 */
+	public MappedFileIdentityReader(IdentityReader reader, int regions) {
+		if ( regions <= 0 ) {
+			throw new IllegalArgumentException("There must be at least one region");
+		}
+		this.reader = reader;
+		this.regions = regions;
+	}
+
+	/**
+	 * Maps the file and returns a parallel stream of its identities. Each region is read sequentially by
+	 * whichever thread picks it up, so identities are only ordered within a region.
+	 */
+	public Stream<Identity> read(Path file) throws IOException {
+		List<ByteBuffer> mapped = map(file);
+		return mapped.parallelStream()
+				.flatMap(region ->
+					StreamSupport.stream(new IdentityIterable(new ByteBufferInputStream(region), reader).spliterator(), false));
+	}
+
+	/**
+	 * Maps each region of the file. The mappings remain valid after the channel is closed.
+	 */
+	private List<ByteBuffer> map(Path file) throws IOException {
+		try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ) {
+			long size = channel.size();
+			long[] boundaries = boundaries(channel, size);
+
+			List<ByteBuffer> mapped = new ArrayList<>(boundaries.length - 1);
+			for ( int i = 0; i < boundaries.length - 1; i++ ) {
+				long start = boundaries[i];
+				long end = boundaries[i + 1];
+				if ( end > start ) {
+					MappedByteBuffer region = channel.map(MapMode.READ_ONLY, start, end - start);
+					mapped.add(region);
+				}
+			}
+			return mapped;
+		}
+	}
+
+	private long[] boundaries(FileChannel channel, long size) throws IOException {
+		int count = (int)Math.max(regions, size / MAX_REGION_SIZE + 1);
+		long[] boundaries = new long[count + 1];
+		boundaries[count] = size;
+		for ( int i = 1; i < count; i++ ) {
+			long nominal = Math.max(size / count * i, boundaries[i - 1]);
+			boundaries[i] = nextLineStart(channel, nominal, size);
+		}
+		return boundaries;
+	}
+
+	/**
+	 * Finds the first position at or after the given one that begins a line
+	 */
+	private long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+		if ( position == 0 ) {
+			return 0;
+		}
+		ByteBuffer scan = ByteBuffer.allocate(8 * 1024);
+		// start one byte early in case the position is already the beginning of a line
+		long at = position - 1;
+		while ( at < size ) {
+			scan.clear();
+			int read = channel.read(scan, at);
+			if ( read <= 0 ) {
+				break;
+			}
+			for ( int i = 0; i < read; i++ ) {
+				if ( scan.get(i) == '\n' ) {
+					return at + i + 1;
+				}
+			}
+			at += read;
+		}
+		return size;
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		public ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if ( len == 0 ) {
+				return 0;
+			}
+			if ( !buffer.hasRemaining() ) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -1,6 +1,5 @@
 package com.joshcummings.codeplay.concurrency.splitting;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -9,7 +8,7 @@ import com.joshcummings.codeplay.concurrency.BadIdentity;
 import com.joshcummings.codeplay.concurrency.Identity;
 import com.joshcummings.codeplay.concurrency.IdentityReader;
 import com.joshcummings.codeplay.concurrency.MalformedIdentityRepository;
-import com.joshcummings.codeplay.concurrency.single.CopyingInputStream;
+import com.joshcummings.codeplay.concurrency.ReplayingInputStream;
 import com.joshcummings.codeplay.concurrency.splitting.ScatterGatherer.Gatherer;
 import com.joshcummings.codeplay.concurrency.splitting.ScatterGatherer.Scatterer;
 
@@ -23,6 +22,9 @@ public class MultiStrategyIdentityReader implements IdentityReader {
 	protected final List<IdentityReader> secondary;
 	protected final MalformedIdentityRepository malformed;
 	
+	// each thread remembers the record it is reading in its own reusable buffer
+	protected final ThreadLocal<ReplayingInputStream> records = ThreadLocal.withInitial(ReplayingInputStream::new);
+	
 	public MultiStrategyIdentityReader(List<IdentityReader> readers, ScatterGatherer scatterGatherer, MalformedIdentityRepository repository) {
 		this.primary = readers.stream().findFirst().orElseThrow(IllegalArgumentException::new);
 		this.secondary = readers.subList(1, readers.size());
@@ -32,40 +34,39 @@ public class MultiStrategyIdentityReader implements IdentityReader {
 	
 	@Override
 	public Identity read(InputStream is) {
-		try ( CopyingInputStream cis = new CopyingInputStream(is); ) {
+		ReplayingInputStream record = records.get();
+		// a loop instead of calling read again so that a long run of malformed records can't build up the stack
+		while ( true ) {
+			record.begin(is);
 			synchronized ( is ) {
-				Identity result = primary.read(cis);
+				Identity result = primary.read(record);
 				if ( isOkay(result) ) {
 					return result;
 				}
 			}
 			
-			Identity result = scatterGatherer.go(new ReaderScatterer(cis, secondary), new IdentityGatherer());
+			Identity result = scatterGatherer.go(new ReaderScatterer(record, secondary), new IdentityGatherer());
 			
-			if ( isOkay(result) ) {
+			if ( result != null && isOkay(result) ) {
 				return result;
 			}
 			
-			malformed.addIdentity(cis.reread(), "All readers failed :(");
-		} catch ( IOException e ) {
-			throw new IllegalStateException("Something terrible happened with the re-read stream", e);
+			malformed.addIdentity(record.detach(), "All readers failed :(");
 		}
-
-		return read(is);
 	}
 
-	private boolean isOkay(Identity identity) {
+	protected boolean isOkay(Identity identity) {
 		return !(identity instanceof BadIdentity);
 	}
 	
 	public static class ReaderScatterer implements Scatterer {
 		private int index;
-		private List<IdentityReader> readers;
-		private CopyingInputStream cis;
+		private List<? extends IdentityReader> readers;
+		private ReplayingInputStream record;
 		
-		public ReaderScatterer(CopyingInputStream cis, List<IdentityReader> readers) {
+		public ReaderScatterer(ReplayingInputStream record, List<? extends IdentityReader> readers) {
 			this.readers = readers;
-			this.cis = cis;
+			this.record = record;
 		}
 
 		@Override
@@ -77,7 +78,9 @@ public class MultiStrategyIdentityReader implements IdentityReader {
 		public Callable<Identity> next() {
 			System.out.println(Thread.currentThread() + " says 'next' " + index);
 			final int which = index++;
-			return () -> readers.get(which).read(cis.reread());
+			// the view is taken here, on the reading thread, and not in the task
+			final InputStream replay = record.replay();
+			return () -> readers.get(which).read(replay);
 		}
 	};
 
@@ -0,0 +1,180 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+
+/**
+ * An address verifier that tunes the verifier behind it by calling its throttleUp and throttleDown
+ * methods, so nobody has to retune permits by hand when the backend slows down.
+ *
+ * It watches how long calls take and how many are rejected, a window of calls at a time, and adjusts the
+ * limit the way TCP adjusts its window: additive increase, multiplicative decrease. The shortest round
+ * trip seen stands in for what a call costs when the backend isn't busy. While calls take about that
+ * long, the backend has room, so the limit goes up by one--but only if the current limit is actually
+ * being used. Once calls take well over that, they are queueing somewhere, so the limit is cut, and it is
+ * cut as well whenever a call is rejected. That keeps the limit hovering around the point where adding
+ * more concurrency stops adding throughput.
+ *
+ * The backend's idle speed can change, so the baseline is allowed to creep back up now and then. It is
+ * learned from the fastest calls, though, so start the limit low and let it grow; a limit that starts
+ * far past the backend's capacity may never see an idle call to learn from.
+ *
+ * Round trips are timed between the throttling verifier and the backend, so time spent waiting for a
+ * permit or a worker doesn't count; otherwise a limit that was too low would look like a slow backend and
+ * be cut further still. To make that possible, this is given the backend and a way to build the
+ * throttling verifier around it:
+ *
+ * <pre>
+ * new AdaptiveLimitingAddressVerifier(backend, timed -&gt; new ConnectionLimitingAddressVerifier(timed, 8), 8, 1, 64);
+ * </pre>
+ */
+public class AdaptiveLimitingAddressVerifier implements AddressVerifier {
+	private static final int DEFAULT_WINDOW = 20;
+	private static final double DEFAULT_TOLERANCE = 2.0;
+	private static final double BACKOFF = 0.75;
+	private static final int WINDOWS_PER_BASELINE = 10;
+
+	private final AddressVerifier backend;
+	private final AddressVerifier delegate;
+	private final int minLimit;
+	private final int maxLimit;
+	private final int window;
+	private final double tolerance;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	// guarded by this
+	private int limit;
+	private int samples;
+	private long totalRtt;
+	private int rejections;
+	private int mostInFlight;
+	private long windowMinRtt = Long.MAX_VALUE;
+	private long baselineRtt = Long.MAX_VALUE;
+	private int windowsSinceBaseline;
+
+	public AdaptiveLimitingAddressVerifier(AddressVerifier backend, Function<AddressVerifier, AddressVerifier> throttle,
+			int initialLimit, int minLimit, int maxLimit) {
+		this(backend, throttle, initialLimit, minLimit, maxLimit, DEFAULT_WINDOW, DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 *
+	 * @param backend - The verifier that does the real work
+	 * @param throttle - Builds the throttleable verifier to tune around what it is given
+	 * @param initialLimit - The limit the throttleable verifier is built with
+	 * @param minLimit - The limit is never taken below this
+	 * @param maxLimit - The limit is never taken above this
+	 * @param window - How many calls to look at before each adjustment
+	 * @param tolerance - How many times the baseline round trip an average call may take before the limit
+	 * 	is cut
+	 */
+	public AdaptiveLimitingAddressVerifier(AddressVerifier backend, Function<AddressVerifier, AddressVerifier> throttle,
+			int initialLimit, int minLimit, int maxLimit, int window, double tolerance) {
+		if ( minLimit <= 0 || initialLimit < minLimit || maxLimit < initialLimit ) {
+			throw new IllegalArgumentException("Limits must be positive and minLimit <= initialLimit <= maxLimit");
+		}
+		if ( window <= 0 || tolerance <= 1 ) {
+			throw new IllegalArgumentException("Window must be positive and tolerance above one");
+		}
+		this.backend = backend;
+		this.delegate = throttle.apply(addresses -> timed(backend, addresses));
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.window = window;
+		this.tolerance = tolerance;
+	}
+
+	@Override
+	public void verify(List<Address> addresses) {
+		try {
+			delegate.verify(addresses);
+		} catch ( RuntimeException e ) {
+			sample(0, true, 0);
+			throw e;
+		}
+	}
+
+	private void timed(AddressVerifier backend, List<Address> addresses) {
+		int concurrent = inFlight.incrementAndGet();
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			backend.verify(addresses);
+			failed = false;
+		} finally {
+			inFlight.decrementAndGet();
+			if ( !failed ) {
+				sample(System.nanoTime() - start, false, concurrent);
+			}
+		}
+	}
+
+	private void sample(long rtt, boolean rejected, int concurrent) {
+		int change;
+		synchronized ( this ) {
+			if ( rejected ) {
+				rejections++;
+			} else {
+				totalRtt += rtt;
+				windowMinRtt = Math.min(windowMinRtt, rtt);
+			}
+			mostInFlight = Math.max(mostInFlight, concurrent);
+			if ( ++samples < window ) {
+				return;
+			}
+			change = adjust();
+		}
+		// outside the lock, since some verifiers do real work to resize
+		if ( change > 0 ) {
+			delegate.throttleUp(change);
+		} else if ( change < 0 ) {
+			delegate.throttleDown(-change);
+		}
+	}
+
+	private int adjust() {
+		int succeeded = samples - rejections;
+		if ( ++windowsSinceBaseline >= WINDOWS_PER_BASELINE && baselineRtt != Long.MAX_VALUE ) {
+			// let the baseline creep up so that one from a faster day doesn't hold the limit down forever
+			baselineRtt += baselineRtt / 10;
+			windowsSinceBaseline = 0;
+		}
+		baselineRtt = Math.min(baselineRtt, windowMinRtt);
+
+		int next = limit;
+		if ( rejections > 0 || succeeded == 0 ) {
+			next = (int)(limit * BACKOFF);
+		} else if ( totalRtt / succeeded > baselineRtt * tolerance ) {
+			next = (int)(limit * BACKOFF);
+		} else if ( mostInFlight * 2 >= limit ) {
+			next = limit + 1;
+		}
+		next = Math.max(minLimit, Math.min(maxLimit, next));
+
+		int change = next - limit;
+		limit = next;
+
+		samples = 0;
+		totalRtt = 0;
+		rejections = 0;
+		mostInFlight = 0;
+		windowMinRtt = Long.MAX_VALUE;
+		return change;
+	}
+
+	public synchronized int getLimit() {
+		return limit;
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+		backend.close();
+	}
+}
@@ -0,0 +1,43 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+import java.util.Locale;
+
+import com.joshcummings.codeplay.concurrency.Address;
+
+/**
+ * Reduces an address to the form that verifying it depends on, so that two spellings of the same
+ * address--"123 Main St." and "123  MAIN ST"--are treated as one.
+ */
+public final class AddressKey {
+	private AddressKey() {
+	}
+
+	public static String of(Address address) {
+		return normalize(address.getAddress1()) + "\t" +
+				normalize(address.getCity()) + "\t" +
+				normalize(address.getState()) + "\t" +
+				normalize(address.getZipCode());
+	}
+
+	// one pass: punctuation counts as a space, runs of spaces become one, and none at either end
+	private static String normalize(String field) {
+		if ( field == null ) {
+			return "";
+		}
+		StringBuilder normalized = new StringBuilder(field.length());
+		boolean space = false;
+		for ( int i = 0; i < field.length(); i++ ) {
+			char c = field.charAt(i);
+			if ( c == '.' || c == ',' || c == '#' || Character.isWhitespace(c) ) {
+				space = normalized.length() > 0;
+			} else {
+				if ( space ) {
+					normalized.append(' ');
+					space = false;
+				}
+				normalized.append(c);
+			}
+		}
+		return normalized.toString().toUpperCase(Locale.ROOT);
+	}
+}
@@ -68,13 +68,16 @@ public class BackpressureAddressVerifier implements AddressVerifier {
 		// however, we can indirectly make the line shorter by increasing the number of
 		// threads.
 		pool.setMaximumPoolSize(pool.getMaximumPoolSize() + by);
+		pool.setCorePoolSize(pool.getMaximumPoolSize());
 	}
 	
 	public void throttleDown(int by) {
 		// It's not possible to change the size of ArrayBlockingQueue after it is instantiated;
 		// however, we can indirectly make the line longer up to the configured cap by decreasing
 		// the number of threads.
-		pool.setMaximumPoolSize(pool.getMaximumPoolSize() - by);
+		// the core size has to come down first, since it may never be more than the maximum
+		pool.setCorePoolSize(Math.max(1, pool.getCorePoolSize() - by));
+		pool.setMaximumPoolSize(pool.getCorePoolSize());
 	}
 	
 	public void close() {
@@ -0,0 +1,30 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One caller's addresses, which may end up spread over several batches. The caller's future completes
+ * once the last of them comes back, without a thread having to wait for it.
+ */
+class BatchSubmission {
+	final CompletableFuture<Void> future = new CompletableFuture<>();
+	private final AtomicInteger outstanding;
+	
+	BatchSubmission(int addresses) {
+		this.outstanding = new AtomicInteger(addresses);
+		if ( addresses == 0 ) {
+			future.complete(null);
+		}
+	}
+	
+	void arrive() {
+		if ( outstanding.decrementAndGet() == 0 ) {
+			future.complete(null);
+		}
+	}
+	
+	void fail(Throwable t) {
+		future.completeExceptionally(t);
+	}
+}
@@ -0,0 +1,239 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+
+/**
+ * An address verifier that remembers what the underlying verifier said about each address, so that
+ * only addresses it hasn't seen lately are sent on.
+ *
+ * The same addresses come up over and over, both within a feed and from one day's feed to the next.
+ * Both outcomes are cached, since an address that didn't verify is no more likely to verify a minute
+ * later. Entries are keyed on the normalized address and expire after a while, and the least recently
+ * used ones are dropped once the cache is full.
+ *
+ * Only what the underlying verifier decides during the call is cached, so it should decide before it
+ * returns. Anything it leaves undecided--because it swallowed a failure, or because, like
+ * BatchingAddressVerifier, it finishes in the background--is sent on again next time.
+ *
+ * Given a file, the cache is loaded from it at startup and saved to it on close.
+ */
+public class CachingAddressVerifier implements AddressVerifier {
+	private final AddressVerifier delegate;
+	private final long ttl;
+	private final Path file;
+
+	// in access order, so that the eldest entry is the least recently used
+	private final Map<String, Result> cache;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public CachingAddressVerifier(AddressVerifier delegate, int maxEntries, long ttl, TimeUnit unit) {
+		this(delegate, maxEntries, ttl, unit, null);
+	}
+
+	/**
+	 *
+	 * @param delegate - The underlying address verifier to invoke on a miss
+	 * @param maxEntries - How many addresses to remember
+	 * @param ttl - How long to trust a result
+	 * @param file - Where to keep the cache between runs, or null to keep it only in memory. A missing
+	 * 	or unreadable file means starting with an empty cache
+	 */
+	public CachingAddressVerifier(AddressVerifier delegate, int maxEntries, long ttl, TimeUnit unit, Path file) {
+		if ( maxEntries <= 0 || ttl <= 0 ) {
+			throw new IllegalArgumentException("Size and time to live must be positive");
+		}
+		this.delegate = delegate;
+		this.ttl = unit.toMillis(ttl);
+		this.file = file;
+		this.cache = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		if ( file != null ) {
+			load();
+		}
+	}
+
+	@Override
+	public void verify(List<Address> addresses) {
+		List<Address> found = new ArrayList<>();
+		List<Boolean> outcomes = new ArrayList<>();
+		List<Address> missed = new ArrayList<>();
+		List<String> missedKeys = new ArrayList<>();
+
+		long now = System.currentTimeMillis();
+		synchronized ( cache ) {
+			for ( Address address : addresses ) {
+				String key = AddressKey.of(address);
+				Result entry = cache.get(key);
+				if ( entry != null && entry.expires > now ) {
+					found.add(address);
+					outcomes.add(entry.verified);
+				} else {
+					if ( entry != null ) {
+						cache.remove(key);
+					}
+					missed.add(address);
+					missedKeys.add(key);
+				}
+			}
+		}
+		hits.add(found.size());
+		misses.add(missed.size());
+
+		// outside of the lock, since setting the outcome notifies listeners
+		for ( int i = 0; i < found.size(); i++ ) {
+			found.get(i).setVerified(outcomes.get(i));
+		}
+
+		if ( !missed.isEmpty() ) {
+			// listened for instead of read afterward, so that a verdict from before this call isn't taken
+			// for this one
+			Boolean[] decided = new Boolean[missed.size()];
+			List<Address.VerificationListener> listeners = new ArrayList<>(missed.size());
+			for ( int i = 0; i < missed.size(); i++ ) {
+				int index = i;
+				Address.VerificationListener listener = (address, verified) -> decided[index] = verified;
+				missed.get(i).addVerificationListener(listener);
+				listeners.add(listener);
+			}
+			try {
+				delegate.verify(missed);
+			} finally {
+				for ( int i = 0; i < missed.size(); i++ ) {
+					missed.get(i).removeVerificationListener(listeners.get(i));
+				}
+			}
+			for ( int i = 0; i < missed.size(); i++ ) {
+				if ( decided[i] != null ) {
+					put(missedKeys.get(i), decided[i]);
+				}
+			}
+		}
+	}
+
+	private void put(String key, boolean verified) {
+		synchronized ( cache ) {
+			cache.put(key, new Result(verified, System.currentTimeMillis() + ttl));
+		}
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public int size() {
+		synchronized ( cache ) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Writes the unexpired entries to the file, least recently used first so that loading them back
+	 * keeps their order. The file is replaced all at once, so a crash mid-save leaves the last one.
+	 * Without a file, there is nothing to do.
+	 */
+	public void save() throws IOException {
+		if ( file == null ) {
+			return;
+		}
+		List<String> lines = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		synchronized ( cache ) {
+			cache.forEach((key, entry) -> {
+				if ( entry.expires > now ) {
+					lines.add(entry.expires + "\t" + entry.verified + "\t" + key);
+				}
+			});
+		}
+
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try ( BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8) ) {
+			for ( String line : lines ) {
+				writer.write(line);
+				writer.newLine();
+			}
+		}
+		Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void load() {
+		if ( !Files.exists(file) ) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		try ( BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8) ) {
+			String line;
+			while ( ( line = reader.readLine() ) != null ) {
+				String[] parts = line.split("\t", 3);
+				if ( parts.length < 3 ) {
+					continue;
+				}
+				long expires = Long.parseLong(parts[0]);
+				if ( expires > now ) {
+					cache.put(parts[2], new Result(Boolean.parseBoolean(parts[1]), expires));
+				}
+			}
+		} catch ( IOException | NumberFormatException e ) {
+			// starting with an empty cache only means a slower first run
+			e.printStackTrace();
+			cache.clear();
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			save();
+		} catch ( IOException e ) {
+			// the next run only starts with a colder cache
+			e.printStackTrace();
+		}
+		delegate.close();
+	}
+
+	@Override
+	public void throttleUp(int by) {
+		delegate.throttleUp(by);
+	}
+
+	@Override
+	public void throttleDown(int by) {
+		delegate.throttleDown(by);
+	}
+
+	private static class Result {
+		private final boolean verified;
+		private final long expires;
+
+		public Result(boolean verified, long expires) {
+			this.verified = verified;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+/**
+ * Thrown instead of calling a verifier whose recent calls have failed too often
+ */
+public class CircuitOpenException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,328 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+import com.joshcummings.codeplay.concurrency.CompletablePatterns;
+
+/**
+ * An address verifier that cuts down on the slowest calls by asking twice, and that stops asking at all
+ * while the verifier behind it is failing.
+ *
+ * If a call hasn't come back by the time most calls have--the 95th percentile of recent calls, say--a
+ * second, hedge, call is made, and whichever answers first wins. The other is cancelled and its thread
+ * interrupted. Since only the slowest few percent of calls are hedged, this adds a few percent more load,
+ * not double.
+ *
+ * That only holds while the percentile is current, though, and it is only recalculated every so often.
+ * Right after the backend slows down, every call would run past the old delay, so hedges are also held to
+ * a budget: each call earns a tenth of a hedge, up to a burst of ten. Once the budget is spent, calls
+ * wait on their one attempt instead of adding load to a backend that is already struggling.
+ *
+ * The two calls each verify their own stand-ins for the addresses, which keep the outcomes by position,
+ * and only the winner's outcomes are set on the real ones, so the loser can't overwrite them. The
+ * stand-ins have the same ids as the addresses they stand in for. This means the verifier behind this one
+ * has to finish verifying before it returns, which rules out the batching ones.
+ *
+ * Once too large a share of recent calls fail, the circuit opens: calls fail right away with a
+ * CircuitOpenException for a while, giving the backend room to recover. After that, one trial call is
+ * let through. If it works, the circuit closes again; if not, it stays open another while.
+ */
+public class HedgingAddressVerifier implements AddressVerifier {
+	private static final int SAMPLES = 1024;
+	private static final int MINIMUM_SAMPLES = 20;
+	private static final int RECALCULATE_EVERY = 64;
+
+	// in tenths of a hedge, so that a call earns one token and a hedge costs ten
+	private static final int HEDGE_COST = 10;
+	private static final int HEDGE_BURST = 10 * HEDGE_COST;
+
+	private final AddressVerifier delegate;
+	private final double percentile;
+	private final CircuitBreaker breaker;
+
+	private final ExecutorService pool = Executors.newCachedThreadPool();
+
+	// the most recent round trips, oldest overwritten first
+	private final long[] latencies = new long[SAMPLES];
+	private int recorded;
+	private volatile long hedgeDelay;
+
+	private final AtomicInteger hedgeBudget = new AtomicInteger(HEDGE_BURST);
+
+	public HedgingAddressVerifier(AddressVerifier delegate) {
+		this(delegate, 0.95, 100, 0.5, 20, 5000);
+	}
+
+	/**
+	 *
+	 * @param delegate - The underlying address verifier to invoke
+	 * @param percentile - How far into the recent round trips to wait before hedging, like 0.95
+	 * @param initialDelay - How many milliseconds to wait before hedging until there are enough round trips
+	 * 	to go on
+	 * @param failureThreshold - The share of calls that may fail before the circuit opens, like 0.5
+	 * @param window - How many calls to judge the failure rate over
+	 * @param openFor - How many milliseconds to fail fast once the circuit opens
+	 */
+	public HedgingAddressVerifier(AddressVerifier delegate, double percentile, long initialDelay,
+			double failureThreshold, int window, long openFor) {
+		if ( percentile <= 0 || percentile >= 1 || failureThreshold <= 0 || failureThreshold > 1 ) {
+			throw new IllegalArgumentException("Percentile and threshold must be between zero and one");
+		}
+		this.delegate = delegate;
+		this.percentile = percentile;
+		this.hedgeDelay = TimeUnit.MILLISECONDS.toNanos(initialDelay);
+		this.breaker = new CircuitBreaker(failureThreshold, window, TimeUnit.MILLISECONDS.toNanos(openFor));
+	}
+
+	@Override
+	public void verify(List<Address> addresses) {
+		boolean trial = breaker.acquire();
+		boolean judged = false;
+		hedgeBudget.accumulateAndGet(1, (budget, earned) -> Math.min(budget + earned, HEDGE_BURST));
+
+		long start = System.nanoTime();
+		Attempt primary = null;
+		Attempt hedge = null;
+		try {
+			primary = new Attempt(addresses);
+			Boolean[] verified;
+			try {
+				verified = primary.result.get(hedgeDelay, TimeUnit.NANOSECONDS);
+			} catch ( TimeoutException slow ) {
+				if ( spendHedge() ) {
+					hedge = new Attempt(addresses);
+					verified = CompletablePatterns.tryAnyOf(primary.result, hedge.result).get();
+				} else {
+					verified = primary.result.get();
+				}
+			}
+			record(System.nanoTime() - start);
+			breaker.record(true);
+			judged = true;
+
+			for ( int i = 0; i < addresses.size(); i++ ) {
+				if ( verified[i] != null ) {
+					addresses.get(i).setVerified(verified[i]);
+				}
+			}
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		} catch ( ExecutionException e ) {
+			breaker.record(false);
+			judged = true;
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			// a trial that ends without a verdict, say because the caller was interrupted, must still
+			// make way for the next one
+			if ( trial && !judged ) {
+				breaker.release();
+			}
+			// whichever lost, if either is still going
+			if ( primary != null ) {
+				primary.cancel();
+			}
+			if ( hedge != null ) {
+				hedge.cancel();
+			}
+		}
+	}
+
+	private boolean spendHedge() {
+		int budget;
+		do {
+			budget = hedgeBudget.get();
+			if ( budget < HEDGE_COST ) {
+				return false;
+			}
+		} while ( !hedgeBudget.compareAndSet(budget, budget - HEDGE_COST) );
+		return true;
+	}
+
+	private void record(long latency) {
+		long[] sorted = null;
+		synchronized ( latencies ) {
+			latencies[recorded++ % SAMPLES] = latency;
+			if ( recorded == MINIMUM_SAMPLES || ( recorded > MINIMUM_SAMPLES && recorded % RECALCULATE_EVERY == 0 ) ) {
+				sorted = Arrays.copyOf(latencies, Math.min(recorded, SAMPLES));
+			}
+		}
+		if ( sorted != null ) {
+			Arrays.sort(sorted);
+			hedgeDelay = sorted[(int)(percentile * (sorted.length - 1))];
+		}
+	}
+
+	/**
+	 * How long a call currently waits before hedging
+	 */
+	public long getHedgeDelay(TimeUnit unit) {
+		return unit.convert(hedgeDelay, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void close() {
+		pool.shutdownNow();
+		delegate.close();
+	}
+
+	@Override
+	public void throttleUp(int by) {
+		delegate.throttleUp(by);
+	}
+
+	@Override
+	public void throttleDown(int by) {
+		delegate.throttleDown(by);
+	}
+
+	/**
+	 * One call to the underlying verifier, on stand-ins for the addresses. What the verifier decides about
+	 * each one is kept by position, null where it decided nothing.
+	 */
+	private class Attempt {
+		private final CompletableFuture<Boolean[]> result = new CompletableFuture<>();
+		private final Boolean[] outcomes;
+		private final Future<?> task;
+
+		public Attempt(List<Address> addresses) {
+			outcomes = new Boolean[addresses.size()];
+			List<Address> standIns = new ArrayList<>(addresses.size());
+			for ( int i = 0; i < addresses.size(); i++ ) {
+				standIns.add(new StandIn(addresses.get(i), outcomes, i));
+			}
+			task = pool.submit(() -> {
+				try {
+					delegate.verify(standIns);
+					result.complete(outcomes);
+				} catch ( Throwable t ) {
+					result.completeExceptionally(t);
+				}
+			});
+		}
+
+		public void cancel() {
+			if ( !task.isDone() ) {
+				task.cancel(true);
+			}
+		}
+	}
+
+	private static class StandIn extends Address {
+		private final Boolean[] outcomes;
+		private final int index;
+
+		public StandIn(Address original, Boolean[] outcomes, int index) {
+			super(original);
+			this.outcomes = outcomes;
+			this.index = index;
+		}
+
+		// still decided and heard about like any other address, so that verifiers behind this one that
+		// wait on verification() see the outcome
+		@Override
+		protected void recordOutcome(boolean verified) {
+			outcomes[index] = verified;
+		}
+	}
+
+	private static class CircuitBreaker {
+		private enum State { CLOSED, OPEN, HALF_OPEN }
+
+		private final double threshold;
+		private final int window;
+		private final long openFor;
+
+		// guarded by this
+		private State state = State.CLOSED;
+		private long openedAt;
+		private boolean trialOut;
+		private int calls;
+		private int failures;
+
+		public CircuitBreaker(double threshold, int window, long openFor) {
+			this.threshold = threshold;
+			this.window = window;
+			this.openFor = openFor;
+		}
+
+		/**
+		 * @return whether this is the trial call
+		 */
+		public synchronized boolean acquire() {
+			if ( state == State.OPEN ) {
+				long waited = System.nanoTime() - openedAt;
+				if ( waited < openFor ) {
+					throw new CircuitOpenException("Failing fast for another " + TimeUnit.NANOSECONDS.toMillis(openFor - waited) + "ms");
+				}
+				state = State.HALF_OPEN;
+				trialOut = false;
+			}
+			if ( state == State.HALF_OPEN ) {
+				if ( trialOut ) {
+					throw new CircuitOpenException("Waiting to hear back from a trial call");
+				}
+				trialOut = true;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Gives up the trial without a verdict, so that the next call can be the trial instead
+		 */
+		public synchronized void release() {
+			if ( state == State.HALF_OPEN ) {
+				trialOut = false;
+			}
+		}
+
+		public synchronized void record(boolean succeeded) {
+			if ( state == State.HALF_OPEN ) {
+				if ( succeeded ) {
+					state = State.CLOSED;
+					calls = 0;
+					failures = 0;
+				} else {
+					open();
+				}
+				return;
+			}
+			if ( state == State.OPEN ) {
+				// a call that was already out when the circuit opened
+				return;
+			}
+			calls++;
+			if ( !succeeded ) {
+				failures++;
+			}
+			if ( failures >= threshold * window ) {
+				open();
+			} else if ( calls >= window ) {
+				calls = 0;
+				failures = 0;
+			}
+		}
+
+		private void open() {
+			state = State.OPEN;
+			openedAt = System.nanoTime();
+			calls = 0;
+			failures = 0;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+
+/**
+ * A batcher that uses the same number of threads no matter how much is sent through it.
+ * 
+ * The other batchers park a thread per address waiting for its batch to fill, and another per caller
+ * waiting for its addresses to come back. Here, one dispatcher thread does all of the waiting: it takes
+ * the first address off the queue and then keeps adding to the batch until it is full or the address has
+ * lingered long enough, and then hands the batch off to a small, fixed pool of senders. Callers are
+ * given a CompletableFuture that completes when the last of their addresses comes back, so nobody
+ * needs a thread to wait on their behalf.
+ * 
+ */
+public class LingerBatcher implements Batcher {
+	private static final int DEFAULT_SENDERS = 4;
+	
+	private final BlockingQueue<BatchOperation> jobQueue = new LinkedBlockingQueue<>();
+	
+	// an AtomicInteger since this class allows for throttling up and down from other threads
+	private final AtomicInteger batchSize;
+	private final long linger;
+	
+	private final AddressVerifier delegate;
+	
+	private final ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+	private final ExecutorService sender;
+	
+	public LingerBatcher(int batchSize, int linger, AddressVerifier delegate) {
+		this(batchSize, linger, delegate, DEFAULT_SENDERS);
+	}
+	
+	/**
+	 * 
+	 * @param batchSize - The target size for each batch. If the first address in the batch has lingered
+	 * 	for the full linger time before the batch is full, then the incomplete batch will be sent
+	 * @param linger - How many milliseconds an address may wait for its batch to fill
+	 * @param delegate - The underlying AddressVerifier to invoke
+	 * @param senders - How many batches may be out with the delegate at once
+	 * 
+	 */
+	public LingerBatcher(int batchSize, int linger, AddressVerifier delegate, int senders) {
+		if ( batchSize <= 0 || linger < 0 || senders <= 0 ) {
+			throw new IllegalArgumentException("Batch size and senders must be positive and linger can't be negative");
+		}
+		this.batchSize = new AtomicInteger(batchSize);
+		this.linger = TimeUnit.MILLISECONDS.toNanos(linger);
+		this.delegate = delegate;
+		this.sender = Executors.newFixedThreadPool(senders);
+		
+		dispatcher.submit(() -> {
+			while ( !Thread.currentThread().isInterrupted() ) {
+				try {
+					dispatch();
+				} catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+	
+	private void dispatch() throws InterruptedException {
+		int size = batchSize.get();
+		List<BatchOperation> batch = new ArrayList<>(size);
+		
+		// nothing to do until there is at least one
+		batch.add(jobQueue.take());
+		long deadline = System.nanoTime() + linger;
+		
+		while ( batch.size() < size ) {
+			jobQueue.drainTo(batch, size - batch.size());
+			if ( batch.size() >= size ) {
+				break;
+			}
+			long remaining = deadline - System.nanoTime();
+			if ( remaining <= 0 ) {
+				break;
+			}
+			BatchOperation next = jobQueue.poll(remaining, TimeUnit.NANOSECONDS);
+			if ( next == null ) {
+				break;
+			}
+			batch.add(next);
+		}
+		
+		send(batch);
+	}
+	
+	private void send(List<BatchOperation> batch) {
+		sender.submit(() -> {
+			List<Address> addresses = new ArrayList<>(batch.size());
+			batch.forEach(p -> addresses.add(p.address));
+			try {
+				delegate.verify(addresses);
+				batch.forEach(p -> p.submission.arrive());
+			} catch ( Throwable t ) {
+				batch.forEach(p -> p.submission.fail(t));
+			}
+		});
+	}
+	
+	@Override
+	public Future<?> submit(List<Address> addresses) {
+		BatchSubmission submission = new BatchSubmission(addresses.size());
+		addresses.forEach(address -> jobQueue.offer(new BatchOperation(address, submission)));
+		return submission.future;
+	}
+	
+	public void throttleUp(int by) {
+		batchSize.addAndGet(by);
+	}
+	
+	public void throttleDown(int by) {
+		batchSize.updateAndGet(size -> Math.max(1, size - by));
+	}
+	
+	public void close() {
+		dispatcher.shutdownNow();
+		sender.shutdownNow();
+	}
+	
+	private static class BatchOperation {
+		public final Address address;
+		public final BatchSubmission submission;
+		
+		public BatchOperation(Address a, BatchSubmission s) {
+			this.address = a;
+			this.submission = s;
+		}
+	}
+}
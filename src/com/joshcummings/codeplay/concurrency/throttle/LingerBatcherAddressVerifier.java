@@ -0,0 +1,45 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+
+/**
+ * An example of implementing asynchronous batching with a single dispatcher thread. {@see LingerBatcher} for more detail.
+ * 
+ */
+public class LingerBatcherAddressVerifier implements AddressVerifier {
+	private LingerBatcher batcher;
+	
+	public LingerBatcherAddressVerifier(AddressVerifier delegate, int batchSize, int linger) {
+		batcher = new LingerBatcher(batchSize, linger, delegate);
+	}
+	
+	@Override
+	public void verify(List<Address> addresses) {
+		try {
+			batcher.submit(addresses).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	public void throttleUp(int by) {
+		this.batcher.throttleUp(by);
+	}
+	
+	public void throttleDown(int by) {
+		this.batcher.throttleDown(by);
+	}
+	
+	public void close() {
+		this.batcher.close();
+	}
+}
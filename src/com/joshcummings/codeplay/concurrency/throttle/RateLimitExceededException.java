@@ -0,0 +1,12 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+/**
+ * Thrown instead of calling a rate-limited verifier when there's no token to be had in time
+ */
+public class RateLimitExceededException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public RateLimitExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,106 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+
+/**
+ * An address verifier that keeps calls to the verifier behind it under a number per second, unlike
+ * ConnectionLimitingAddressVerifier, which only limits how many are out at once.
+ *
+ * This is a token bucket: tokens drip in at the configured rate, up to the size of the bucket, and each
+ * call takes one. A full bucket lets a burst through all at once. The bucket is a single number--the
+ * time at which it would next be empty--moved forward with compare-and-set, so taking a token never
+ * locks. A caller that has to wait reserves its token first and then parks until it is due, so waiting
+ * callers line up in order instead of racing for each token as it comes in.
+ *
+ * When the wait would be longer than the caller is willing to, it gets a RateLimitExceededException
+ * without the call being made. A maximum wait of zero fails fast whenever the bucket is empty.
+ */
+public class RateLimitingAddressVerifier implements AddressVerifier {
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final AddressVerifier delegate;
+	private final int burst;
+	private final long maxWait;
+
+	private volatile long interval;
+
+	// when the bucket runs dry if nobody else takes a token; a time in the past means it's full
+	private final AtomicLong emptyAt;
+
+	/**
+	 *
+	 * @param delegate - The underlying address verifier to invoke
+	 * @param perSecond - How many calls to let through each second
+	 * @param burst - How many calls to let through at once after a quiet spell
+	 * @param maxWait - How long a caller may wait for a token before giving up; zero to fail fast
+	 */
+	public RateLimitingAddressVerifier(AddressVerifier delegate, int perSecond, int burst, long maxWait, TimeUnit unit) {
+		if ( perSecond <= 0 || burst <= 0 || maxWait < 0 ) {
+			throw new IllegalArgumentException("Rate and burst must be positive and the wait can't be negative");
+		}
+		this.delegate = delegate;
+		this.burst = burst;
+		this.maxWait = unit.toNanos(maxWait);
+		this.interval = NANOS_PER_SECOND / perSecond;
+		this.emptyAt = new AtomicLong(System.nanoTime() - burst * interval);
+	}
+
+	@Override
+	public void verify(List<Address> addresses) {
+		long due = reserve();
+		long wait;
+		while ( ( wait = due - System.nanoTime() ) > 0 ) {
+			LockSupport.parkNanos(this, wait);
+			if ( Thread.interrupted() ) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		delegate.verify(addresses);
+	}
+
+	/**
+	 * Takes a token, returning when it may be used
+	 */
+	private long reserve() {
+		while ( true ) {
+			long now = System.nanoTime();
+			long step = interval;
+			long current = emptyAt.get();
+			// a bucket can't be fuller than full
+			long next = Math.max(current, now - burst * step) + step;
+			// if taking this token leaves the bucket empty until some time from now, that's when it's ours
+			if ( next - now > maxWait ) {
+				throw new RateLimitExceededException("No token for another " + TimeUnit.NANOSECONDS.toMillis(next - now) + "ms");
+			}
+			if ( emptyAt.compareAndSet(current, next) ) {
+				return next;
+			}
+		}
+	}
+
+	public int getRate() {
+		return (int)(NANOS_PER_SECOND / interval);
+	}
+
+	@Override
+	public void throttleUp(int by) {
+		interval = NANOS_PER_SECOND / (getRate() + by);
+	}
+
+	@Override
+	public void throttleDown(int by) {
+		interval = NANOS_PER_SECOND / Math.max(1, getRate() - by);
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+	}
+}
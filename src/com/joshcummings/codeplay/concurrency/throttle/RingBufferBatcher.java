@@ -0,0 +1,274 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+
+/**
+ * A batcher that queues addresses in a fixed ring of slots instead of a LinkedBlockingQueue, so that
+ * neither callers nor the dispatcher ever take a lock.
+ * 
+ * Many callers put addresses in and one dispatcher thread takes them out. A caller claims as many slots
+ * as it has addresses with a single compare-and-set on the claim cursor, fills them in, and then marks
+ * each one published by writing its sequence number next to it. Nothing is allocated per address. The
+ * dispatcher reads forward from where it left off for as long as the slots are published, up to a batch,
+ * and sends that run as one batch. When the ring is full, callers wait for the dispatcher to catch up.
+ * 
+ * The claim cursor, the dispatcher's cursor, and the callers' copy of the dispatcher's cursor are each
+ * padded out to a cache line of their own, so that callers claiming slots don't slow down the dispatcher
+ * freeing them and vice versa.
+ * 
+ * Otherwise this works like LingerBatcher: a partial batch goes once its first address has lingered long
+ * enough, batches go to a small, fixed pool of senders, and callers get a future back.
+ * 
+ */
+public class RingBufferBatcher implements Batcher {
+	private static final int DEFAULT_CAPACITY = 64 * 1024;
+	private static final int DEFAULT_SENDERS = 4;
+	private static final long MAX_IDLE = TimeUnit.MILLISECONDS.toNanos(10);
+	
+	private final int capacity;
+	private final int mask;
+	private final Address[] addresses;
+	private final BatchSubmission[] submissions;
+	// the sequence number last published into each slot, so the dispatcher can tell a filled slot from a stale one
+	private final AtomicLongArray published;
+	
+	// the next sequence number to hand out to callers
+	private final Sequence claimed = new Sequence(0);
+	// the next sequence number the dispatcher will read; everything before it may be overwritten
+	private final Sequence consumed = new Sequence(0);
+	// what the callers last saw of consumed, so they don't have to read the dispatcher's cache line on every claim
+	private final Sequence consumedCache = new Sequence(0);
+	
+	private volatile Thread dispatching;
+	private volatile boolean sleeping;
+	
+	// an AtomicInteger since this class allows for throttling up and down from other threads
+	private final AtomicInteger batchSize;
+	private final long linger;
+	
+	private final AddressVerifier delegate;
+	
+	private final ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+	private final ExecutorService sender;
+	
+	public RingBufferBatcher(int batchSize, int linger, AddressVerifier delegate) {
+		this(batchSize, linger, delegate, DEFAULT_CAPACITY, DEFAULT_SENDERS);
+	}
+	
+	/**
+	 * 
+	 * @param batchSize - The target size for each batch. If the first address in the batch has lingered
+	 * 	for the full linger time before the batch is full, then the incomplete batch will be sent
+	 * @param linger - How many milliseconds an address may wait for its batch to fill
+	 * @param delegate - The underlying AddressVerifier to invoke
+	 * @param capacity - How many addresses may be waiting at once; rounded up to a power of two
+	 * @param senders - How many batches may be out with the delegate at once
+	 * 
+	 */
+	public RingBufferBatcher(int batchSize, int linger, AddressVerifier delegate, int capacity, int senders) {
+		if ( batchSize <= 0 || linger < 0 || senders <= 0 || capacity <= 0 || capacity > 1 << 30 ) {
+			throw new IllegalArgumentException("Batch size, capacity and senders must be positive and linger can't be negative");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if ( size < capacity ) {
+			size <<= 1;
+		}
+		this.capacity = size;
+		this.mask = size - 1;
+		this.addresses = new Address[size];
+		this.submissions = new BatchSubmission[size];
+		this.published = new AtomicLongArray(size);
+		for ( int i = 0; i < size; i++ ) {
+			published.set(i, -1);
+		}
+		
+		this.batchSize = new AtomicInteger(batchSize);
+		this.linger = TimeUnit.MILLISECONDS.toNanos(linger);
+		this.delegate = delegate;
+		this.sender = Executors.newFixedThreadPool(senders);
+		
+		dispatcher.submit(() -> {
+			dispatching = Thread.currentThread();
+			long next = 0;
+			while ( !Thread.currentThread().isInterrupted() ) {
+				next = dispatch(next);
+			}
+		});
+	}
+	
+	@Override
+	public Future<?> submit(List<Address> jobs) {
+		BatchSubmission submission = new BatchSubmission(jobs.size());
+		int offset = 0;
+		while ( offset < jobs.size() ) {
+			int count = Math.min(jobs.size() - offset, capacity);
+			long first = claim(count);
+			for ( int i = 0; i < count; i++ ) {
+				long sequence = first + i;
+				int slot = (int)sequence & mask;
+				addresses[slot] = jobs.get(offset + i);
+				submissions[slot] = submission;
+				if ( i < count - 1 ) {
+					published.lazySet(slot, sequence);
+				} else {
+					// a full fence on the last one, so that the check for a sleeping dispatcher can't
+					// be reordered ahead of it
+					published.set(slot, sequence);
+				}
+			}
+			offset += count;
+			wake();
+		}
+		return submission.future;
+	}
+	
+	private long claim(int count) {
+		while ( true ) {
+			long current = claimed.get();
+			long next = current + count;
+			if ( next - consumedCache.get() > capacity ) {
+				long free = consumed.get();
+				consumedCache.set(free);
+				if ( next - free > capacity ) {
+					// the ring is full; let the dispatcher catch up
+					wake();
+					LockSupport.parkNanos(1000);
+					continue;
+				}
+			}
+			if ( claimed.compareAndSet(current, next) ) {
+				return current;
+			}
+		}
+	}
+	
+	private void wake() {
+		Thread thread = dispatching;
+		if ( sleeping && thread != null ) {
+			LockSupport.unpark(thread);
+		}
+	}
+	
+	private long dispatch(long next) {
+		int size = batchSize.get();
+		int run = available(next, size);
+		if ( run == 0 ) {
+			sleepUnlessAvailable(next, MAX_IDLE);
+			return next;
+		}
+		
+		long deadline = System.nanoTime() + linger;
+		long remaining;
+		while ( run < size && ( remaining = deadline - System.nanoTime() ) > 0 ) {
+			sleepUnlessAvailable(next + run, remaining);
+			if ( Thread.currentThread().isInterrupted() ) {
+				return next;
+			}
+			run = available(next, size);
+		}
+		
+		List<Address> batch = new ArrayList<>(run);
+		List<BatchSubmission> from = new ArrayList<>(run);
+		for ( int i = 0; i < run; i++ ) {
+			int slot = (int)(next + i) & mask;
+			batch.add(addresses[slot]);
+			from.add(submissions[slot]);
+			// so that the ring doesn't keep finished addresses from being collected
+			addresses[slot] = null;
+			submissions[slot] = null;
+		}
+		consumed.lazySet(next + run);
+		send(batch, from);
+		return next + run;
+	}
+	
+	private int available(long from, int max) {
+		int run = 0;
+		while ( run < max && published.get((int)(from + run) & mask) == from + run ) {
+			run++;
+		}
+		return run;
+	}
+	
+	private void sleepUnlessAvailable(long sequence, long nanos) {
+		sleeping = true;
+		// check again after saying we're asleep, in case it was published in between
+		if ( published.get((int)sequence & mask) != sequence ) {
+			LockSupport.parkNanos(this, nanos);
+		}
+		sleeping = false;
+	}
+	
+	private void send(List<Address> batch, List<BatchSubmission> from) {
+		sender.submit(() -> {
+			try {
+				delegate.verify(batch);
+				from.forEach(BatchSubmission::arrive);
+			} catch ( Throwable t ) {
+				from.forEach(submission -> submission.fail(t));
+			}
+		});
+	}
+	
+	public void throttleUp(int by) {
+		batchSize.addAndGet(by);
+	}
+	
+	public void throttleDown(int by) {
+		batchSize.updateAndGet(size -> Math.max(1, size - by));
+	}
+	
+	public void close() {
+		dispatcher.shutdownNow();
+		sender.shutdownNow();
+	}
+	
+	private static class LeftPadding {
+		protected long p1, p2, p3, p4, p5, p6, p7;
+	}
+	
+	private static class Value extends LeftPadding {
+		protected volatile long value;
+	}
+	
+	/**
+	 * A counter with a cache line to itself
+	 */
+	private static class Sequence extends Value {
+		private static final AtomicLongFieldUpdater<Value> VALUE = AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+		
+		protected long p9, p10, p11, p12, p13, p14, p15;
+		
+		public Sequence(long initial) {
+			this.value = initial;
+		}
+		
+		public long get() {
+			return value;
+		}
+		
+		public void set(long next) {
+			value = next;
+		}
+		
+		public void lazySet(long next) {
+			VALUE.lazySet(this, next);
+		}
+		
+		public boolean compareAndSet(long expected, long next) {
+			return VALUE.compareAndSet(this, expected, next);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.joshcummings.codeplay.concurrency.throttle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+
+/**
+ * An address verifier that makes sure the same address is only being verified once at a time.
+ *
+ * Household duplicates mean that several threads are often verifying the same address at the same
+ * moment. The first one to ask about an address sends it on to the underlying verifier; anyone who asks
+ * about that address while it is still out waits for that answer instead of asking again. Once the
+ * answer is in, the next caller starts over, so this doesn't remember anything--put a
+ * CachingAddressVerifier in front for that.
+ *
+ * It can sit in front of the backpressure and connection-limiting verifiers so that duplicates don't
+ * take up their workers or permits. The underlying verifier should decide before it returns; any address
+ * it returns without deciding is given up on, and whoever was waiting on it asks for themselves.
+ */
+public class SingleFlightAddressVerifier implements AddressVerifier {
+	private static final long DEFAULT_TIMEOUT = 30000;
+
+	private final AddressVerifier delegate;
+	private final long timeout;
+
+	private final ConcurrentMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+	public SingleFlightAddressVerifier(AddressVerifier delegate) {
+		this(delegate, DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 *
+	 * @param delegate - The underlying address verifier to invoke
+	 * @param timeout - How long to wait on another caller's verification before giving up on it and
+	 * 	asking the underlying verifier directly
+	 */
+	public SingleFlightAddressVerifier(AddressVerifier delegate, long timeout, TimeUnit unit) {
+		this.delegate = delegate;
+		this.timeout = unit.toMillis(timeout);
+	}
+
+	@Override
+	public void verify(List<Address> addresses) {
+		List<Address> leading = new ArrayList<>();
+		List<CompletableFuture<Boolean>> led = new ArrayList<>();
+		List<Address> following = new ArrayList<>();
+		List<CompletableFuture<Boolean>> followed = new ArrayList<>();
+
+		for ( Address address : addresses ) {
+			String key = AddressKey.of(address);
+			CompletableFuture<Boolean> mine = new CompletableFuture<>();
+			CompletableFuture<Boolean> theirs = inFlight.putIfAbsent(key, mine);
+			if ( theirs == null ) {
+				address.verification().thenAccept(verified -> {
+					inFlight.remove(key, mine);
+					mine.complete(verified);
+				});
+				leading.add(address);
+				led.add(mine);
+			} else {
+				following.add(address);
+				followed.add(theirs);
+			}
+		}
+
+		if ( !leading.isEmpty() ) {
+			try {
+				delegate.verify(leading);
+			} catch ( RuntimeException e ) {
+				// let anyone waiting on these know to go ask for themselves
+				for ( int i = 0; i < leading.size(); i++ ) {
+					inFlight.remove(AddressKey.of(leading.get(i)), led.get(i));
+					led.get(i).completeExceptionally(e);
+				}
+				throw e;
+			}
+			// some verifiers swallow an interrupt or a failure and return without deciding; don't leave
+			// these in flight for everyone after to wait out the timeout on
+			for ( int i = 0; i < leading.size(); i++ ) {
+				if ( !led.get(i).isDone() ) {
+					inFlight.remove(AddressKey.of(leading.get(i)), led.get(i));
+					led.get(i).completeExceptionally(new IllegalStateException("Returned without deciding " + leading.get(i)));
+				}
+			}
+		}
+
+		List<Address> orphaned = new ArrayList<>();
+		for ( int i = 0; i < following.size(); i++ ) {
+			try {
+				following.get(i).setVerified(followed.get(i).get(timeout, TimeUnit.MILLISECONDS));
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch ( ExecutionException | TimeoutException e ) {
+				orphaned.add(following.get(i));
+			}
+		}
+
+		if ( !orphaned.isEmpty() ) {
+			delegate.verify(orphaned);
+		}
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+	}
+
+	@Override
+	public void throttleUp(int by) {
+		delegate.throttleUp(by);
+	}
+
+	@Override
+	public void throttleDown(int by) {
+		delegate.throttleDown(by);
+	}
+}
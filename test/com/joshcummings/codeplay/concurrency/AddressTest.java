@@ -0,0 +1,64 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AddressTest {
+	private Address address() {
+		return new Address("123 Main St", "Springfield", "IL", "62701");
+	}
+
+	@Test
+	public void testListenersHearEveryChangeUntilRemoved() {
+		Address address = address();
+		AtomicInteger heard = new AtomicInteger();
+		Address.VerificationListener listener = (a, verified) -> heard.incrementAndGet();
+
+		address.addVerificationListener(listener);
+		address.setVerified(true);
+		address.setVerified(false);
+		address.removeVerificationListener(listener);
+		address.setVerified(true);
+
+		Assert.assertEquals(2, heard.get());
+	}
+
+	@Test
+	public void testVerificationCompletesOnceDecided() throws Exception {
+		Address address = address();
+		CompletableFuture<Boolean> verification = address.verification();
+		Assert.assertFalse(verification.isDone());
+
+		new Thread(() -> address.setVerified(true)).start();
+
+		Assert.assertTrue(verification.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testVerificationAfterTheFactIsAlreadyDone() {
+		Address address = address();
+		address.setVerified(false);
+		CompletableFuture<Boolean> verification = address.verification();
+		Assert.assertTrue(verification.isDone());
+		Assert.assertFalse(verification.join());
+	}
+
+	@Test
+	public void testWaitingOnABatch() throws Exception {
+		List<Address> addresses = Arrays.asList(address(), address(), address());
+		CompletableFuture<Void> all = Address.verificationOf(addresses);
+
+		addresses.get(0).setVerified(true);
+		addresses.get(1).setVerified(false);
+		Assert.assertFalse(all.isDone());
+
+		addresses.get(2).setVerified(true);
+		all.get(5, TimeUnit.SECONDS);
+	}
+}
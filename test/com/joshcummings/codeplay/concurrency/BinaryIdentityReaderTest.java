@@ -0,0 +1,160 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class BinaryIdentityReaderTest {
+	private IdentityReader tsv = new FileIdentityReader();
+	private BinaryIdentityReader binary = new BinaryIdentityReader();
+
+	@Test
+	public void testSameIdentitiesAsTsv() throws IOException {
+		List<Identity> expected = readTsv();
+		byte[] file = write(expected, 1024);
+
+		List<Identity> actual = read(new ByteArrayInputStream(file), binary);
+		Assert.assertEquals(describe(expected), describe(actual));
+	}
+
+	@Test
+	public void testBlocksReadInParallel() throws IOException {
+		List<Identity> expected = readTsv();
+		Path file = Files.createTempFile("identities", ".bin");
+		try {
+			Files.write(file, write(expected, 512));
+			List<String> actual = describe(binary.read(file).collect(Collectors.toList()));
+			List<String> sorted = describe(expected);
+			sorted.sort(null);
+			actual.sort(null);
+			Assert.assertEquals(sorted, actual);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testMultipleAddressesAndMissingFields() throws IOException {
+		Identity identity = new Person("jos\u00e9", null, "Jos\u00e9 Garc\u00eda", null, "jose@example.com",
+				Arrays.asList(new Address("1 Main St", "Provo", "UT", "84601"), new Address("2 Elm St", "Orem", "UT", "84057")),
+				34);
+		byte[] file = write(Arrays.asList(identity, identity), 1);
+
+		List<Identity> actual = read(new ByteArrayInputStream(file), binary);
+		Assert.assertEquals(2, actual.size());
+		Assert.assertEquals(describe(Arrays.asList(identity, identity)), describe(actual));
+		Assert.assertNull(actual.get(0).getPassword());
+		Assert.assertEquals(2, actual.get(0).getAddresses().size());
+	}
+
+	@Test
+	public void testTruncatedRecordIsBad() throws IOException {
+		byte[] file = write(readTsv().subList(0, 1), 1024);
+		InputStream is = new ByteArrayInputStream(file, 0, file.length - 1);
+		Assert.assertTrue(binary.read(is) instanceof BadIdentity);
+		Assert.assertNull(binary.read(is));
+	}
+
+	@Test
+	public void testCorruptLengthEndsTheBlock() throws IOException {
+		List<Identity> expected = readTsv().subList(0, 3);
+		byte[] bytes = write(expected, 1024 * 1024);
+		// the first record's length, right after the block header
+		ByteBuffer.wrap(bytes).putInt(8, Integer.MAX_VALUE);
+
+		Path file = Files.createTempFile("identities", ".bin");
+		try {
+			Files.write(file, bytes);
+			List<Identity> actual = binary.read(file).collect(Collectors.toList());
+			Assert.assertEquals(1, actual.size());
+			Assert.assertTrue(actual.get(0) instanceof BadIdentity);
+
+			ByteBuffer.wrap(bytes).putInt(8, -1);
+			Files.write(file, bytes);
+			actual = binary.read(file).collect(Collectors.toList());
+			Assert.assertTrue(actual.get(0) instanceof BadIdentity);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testHugeLengthIsBadWithoutAllocatingIt() throws IOException {
+		byte[] file = write(readTsv().subList(0, 1), 1024);
+		ByteBuffer.wrap(file).putInt(8, Integer.MAX_VALUE);
+		InputStream is = new ByteArrayInputStream(file);
+		Assert.assertTrue(binary.read(is) instanceof BadIdentity);
+	}
+
+	@Test
+	@Ignore("A benchmark, too sensitive to machine load to run with every build")
+	public void testFasterThanTsv() throws IOException {
+		byte[] tsvFile = Files.readAllBytes(Paths.get("test/identities.csv"));
+		byte[] binaryFile = write(readTsv(), 64 * 1024);
+
+		// warm up, then measure
+		for ( int i = 0; i < 20; i++ ) {
+			time(tsvFile, tsv);
+			time(binaryFile, binary);
+		}
+		long tsvNanos = time(tsvFile, tsv);
+		long binaryNanos = time(binaryFile, binary);
+		System.out.println("TSV: " + tsvNanos / 1000 + "us, binary: " + binaryNanos / 1000 + "us");
+	}
+
+	private long time(byte[] file, IdentityReader reader) {
+		long start = System.nanoTime();
+		for ( int i = 0; i < 20; i++ ) {
+			read(new ByteArrayInputStream(file), reader);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private List<Identity> readTsv() throws IOException {
+		try ( InputStream is = new FileInputStream("test/identities.csv") ) {
+			return read(is, tsv).stream()
+					.filter(identity -> !( identity instanceof BadIdentity ))
+					.collect(Collectors.toList());
+		}
+	}
+
+	private List<Identity> read(InputStream is, IdentityReader reader) {
+		return StreamSupport.stream(new IdentityIterable(is, reader).spliterator(), false).collect(Collectors.toList());
+	}
+
+	private byte[] write(List<Identity> identities, int blockSize) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try ( BinaryIdentityWriter writer = new BinaryIdentityWriter(baos, blockSize) ) {
+			for ( Identity identity : identities ) {
+				writer.write(identity);
+			}
+		}
+		return baos.toByteArray();
+	}
+
+	private List<String> describe(List<Identity> identities) {
+		return identities.stream().map(this::describe).collect(Collectors.toList());
+	}
+
+	private String describe(Identity identity) {
+		return identity.getUsername() + "|" + ( identity.getPassword() == null ? null : new String(identity.getPassword()) ) +
+				"|" + identity.getName() + "|" + identity.getPhoneNumber() + "|" + identity.getEmailAddress() + "|" + identity.getAge() +
+				identity.getAddresses().stream()
+					.map(address -> "|" + address.getAddress1() + "," + address.getCity() + "," + address.getState() + "," + address.getZipCode())
+					.collect(Collectors.joining());
+	}
+}
@@ -0,0 +1,58 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BufferedLineInputStreamTest {
+	@Test
+	public void testSameLinesAsLineReader() throws IOException {
+		try ( InputStream bytewise = new FileInputStream("test/identities.csv");
+				InputStream buffered = new BufferedLineInputStream(new FileInputStream("test/identities.csv")) ) {
+			String expected;
+			do {
+				expected = LineReader.readLine(bytewise);
+				Assert.assertEquals(expected, LineReader.readLine(buffered));
+			} while ( expected != null );
+		}
+	}
+
+	@Test
+	public void testLineLongerThanBuffer() throws IOException {
+		byte[] bytes = " a line that is much longer than the buffer\t\r\nnext\n".getBytes();
+		BufferedLineInputStream is = new BufferedLineInputStream(new ByteArrayInputStream(bytes), 4);
+		Assert.assertEquals("a line that is much longer than the buffer", is.readLine());
+		Assert.assertEquals("next", is.readLine());
+		Assert.assertNull(is.readLine());
+	}
+
+	@Test
+	public void testByteReadsInterleaveWithLines() throws IOException {
+		BufferedLineInputStream is = new BufferedLineInputStream(new ByteArrayInputStream("12\n34\nunterminated".getBytes()), 3);
+		Assert.assertEquals('1', is.read());
+		Assert.assertEquals("2", is.readLine());
+		Assert.assertEquals("34", is.readLine());
+		Assert.assertNull(is.readLine());
+		Assert.assertEquals(-1, is.read());
+	}
+
+	@Test
+	public void testWholeFileReadsThroughBuffer() throws IOException {
+		byte[] expected = Files.readAllBytes(Paths.get("test/identities.csv"));
+		try ( InputStream is = new BufferedLineInputStream(new FileInputStream("test/identities.csv"), 128) ) {
+			byte[] actual = new byte[expected.length];
+			int read = 0, n;
+			while ( ( n = is.read(actual, read, actual.length - read) ) > 0 ) {
+				read += n;
+			}
+			Assert.assertEquals(expected.length, read);
+			Assert.assertArrayEquals(expected, actual);
+		}
+	}
+}
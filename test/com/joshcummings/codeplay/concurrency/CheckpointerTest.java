@@ -0,0 +1,117 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.joshcummings.codeplay.concurrency.StatsLedger.StatsEntry;
+import com.joshcummings.codeplay.concurrency.aggregation.ThreadSafeStatsLedger;
+
+public class CheckpointerTest {
+	private Path directory;
+	private Path file;
+	private Path checkpoint;
+	private List<String> lines;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("checkpoints");
+		file = directory.resolve("identities.csv");
+		checkpoint = directory.resolve("identities.checkpoint");
+
+		// only the lines in FileIdentityReader's layout, so that every line is one good identity
+		lines = Files.readAllLines(Paths.get("test/identities.csv")).stream()
+				.filter(line -> line.trim().split("\t").length == 10)
+				.limit(20)
+				.collect(Collectors.toList());
+		Files.write(file, lines, StandardCharsets.UTF_8);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for ( Path path : Files.list(directory).collect(Collectors.toList()) ) {
+			Files.delete(path);
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testOffsetOnlyPassesWhatIsDone() throws IOException {
+		Checkpointer checkpointer = new Checkpointer(file, checkpoint, new ThreadSafeStatsLedger());
+		try ( InputStream is = checkpointer.open() ) {
+			IdentityReader reader = checkpointer.track(new FileIdentityReader());
+			Identity first = reader.read(is);
+			Identity second = reader.read(is);
+			Identity third = reader.read(is);
+
+			checkpointer.completed(third, null);
+			checkpointer.completed(second, null);
+			Assert.assertEquals(0, checkpointer.getCommittedOffset());
+
+			checkpointer.completed(first, null);
+			Assert.assertEquals(offsetAfter(3), checkpointer.getCommittedOffset());
+		}
+	}
+
+	@Test
+	public void testResumesFromLastCheckpoint() throws IOException {
+		Checkpointer crashed = new Checkpointer(file, checkpoint, new ThreadSafeStatsLedger(), 1);
+		try ( InputStream is = crashed.open() ) {
+			IdentityReader reader = crashed.track(new FileIdentityReader());
+			List<Identity> read = new ArrayList<>();
+			for ( int i = 0; i < 12; i++ ) {
+				read.add(reader.read(is));
+			}
+			// the eleventh never finishes, so the twelfth must be redone as well
+			for ( int i = 0; i < 12; i++ ) {
+				if ( i != 10 ) {
+					crashed.completed(read.get(i), new StatsEntry(read.get(i)));
+				}
+			}
+		}
+
+		StatsLedger ledger = new ThreadSafeStatsLedger();
+		Checkpointer resumed = new Checkpointer(file, checkpoint, ledger, 1);
+		try ( InputStream is = resumed.open() ) {
+			Assert.assertEquals(offsetAfter(10), resumed.getCommittedOffset());
+			Assert.assertEquals(10, ledger.getRecordCount().intValue());
+			Assert.assertEquals(lines.get(10).split("\t")[0], resumed.track(new FileIdentityReader()).read(is).getUsername());
+		}
+
+		String firstName = lines.get(0).split("\t")[2].split(" ")[0];
+		long expected = lines.subList(0, 10).stream().filter(line -> line.split("\t")[2].startsWith(firstName + " ")).count();
+		Assert.assertEquals(expected, ledger.getFirstNameCount(firstName).longValue());
+	}
+
+	@Test
+	public void testCheckpointForAnotherFileIsIgnored() throws IOException {
+		Path other = directory.resolve("other.csv");
+		Files.write(other, lines.subList(0, 1), StandardCharsets.UTF_8);
+		Checkpointer checkpointer = new Checkpointer(other, checkpoint, new ThreadSafeStatsLedger());
+		try ( InputStream is = checkpointer.open() ) {
+			checkpointer.completed(checkpointer.track(new FileIdentityReader()).read(is), null);
+		}
+		checkpointer.finish();
+
+		Checkpointer resumed = new Checkpointer(file, checkpoint, new ThreadSafeStatsLedger());
+		try ( InputStream is = resumed.open() ) {
+			Assert.assertEquals(0, resumed.getCommittedOffset());
+			Assert.assertEquals(lines.get(0).split("\t")[0], resumed.track(new FileIdentityReader()).read(is).getUsername());
+		}
+	}
+
+	private long offsetAfter(int count) {
+		return lines.subList(0, count).stream().mapToLong(line -> line.getBytes(StandardCharsets.UTF_8).length + 1).sum();
+	}
+}
@@ -0,0 +1,174 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class FieldCursorTest {
+	@Test
+	public void testFieldsMatchSplit() throws IOException {
+		try ( InputStream is = new BufferedLineInputStream(new FileInputStream("test/identities.csv")) ) {
+			for ( String line : Files.readAllLines(Paths.get("test/identities.csv")) ) {
+				String[] parts = line.trim().split("\t");
+				FieldCursor fields = LineReader.readFields(is);
+				for ( String part : parts ) {
+					Assert.assertEquals(part, fields.nextString());
+				}
+				Assert.assertFalse(fields.hasNext());
+			}
+			Assert.assertNull(LineReader.readFields(is));
+		}
+	}
+
+	@Test
+	public void testBytewiseFallback() throws IOException {
+		FieldCursor fields = LineReader.readFields(new ByteArrayInputStream("  bob\tBob\tBobson\t33\t\r\n".getBytes()));
+		Assert.assertEquals("bob", fields.nextString());
+		Assert.assertEquals("Bob Bobson", fields.nextJoined(2, ' '));
+		Assert.assertEquals(33, fields.nextInt());
+		Assert.assertFalse(fields.hasNext());
+	}
+
+	@Test
+	public void testFieldsAreDecodedAsUtf8() throws IOException {
+		String line = "jos\u00e9\tpa\u00df\tJos\u00e9\tGarc\u00eda \u2603 \ud83d\ude00\t33";
+		byte[] bytes = ( line + "\n" ).getBytes(StandardCharsets.UTF_8);
+
+		for ( InputStream is : Arrays.asList(new ByteArrayInputStream(bytes), new BufferedLineInputStream(new ByteArrayInputStream(bytes))) ) {
+			FieldCursor fields = LineReader.readFields(is);
+			Assert.assertEquals("jos\u00e9", fields.nextString());
+			Assert.assertArrayEquals("pa\u00df".toCharArray(), fields.nextChars());
+			Assert.assertEquals("Jos\u00e9 Garc\u00eda \u2603 \ud83d\ude00", fields.nextJoined(2, ' '));
+			Assert.assertEquals(33, fields.nextInt());
+		}
+
+		Assert.assertEquals(line, LineReader.readLine(new ByteArrayInputStream(bytes)));
+		Assert.assertEquals(line, LineReader.readLine(new BufferedLineInputStream(new ByteArrayInputStream(bytes))));
+	}
+
+	@Test
+	public void testMalformedUtf8IsReplaced() {
+		byte[] bytes = { 'a', (byte)0xc3, 'b', (byte)0xff };
+		Assert.assertEquals(new String(bytes, StandardCharsets.UTF_8), new Utf8Decoder().decode(bytes, 0, bytes.length));
+	}
+
+	@Test
+	public void testIntegersParseLikeParseInt() {
+		List<String> valid = Arrays.asList("0", "33", "+7", "-12", "007",
+				String.valueOf(Integer.MAX_VALUE), String.valueOf(Integer.MIN_VALUE));
+		for ( String number : valid ) {
+			Assert.assertEquals(Integer.parseInt(number), cursor(number).nextInt());
+		}
+
+		List<String> invalid = Arrays.asList("", "-", "+", "3a", "1 2", "2147483648", "-2147483649", "99999999999");
+		for ( String number : invalid ) {
+			try {
+				cursor(number).nextInt();
+				Assert.fail("Expected " + number + " to be rejected");
+			} catch ( NumberFormatException e ) {
+				// expected
+			}
+		}
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testMissingFieldFails() {
+		FieldCursor fields = cursor("one\ttwo");
+		fields.skip();
+		fields.skip();
+		fields.nextString();
+	}
+
+	/**
+	 * FileIdentityReader as it was before it used a cursor
+	 */
+	private static class SplitIdentityReader implements IdentityReader {
+		@Override
+		public Identity read(InputStream is) {
+			try {
+				String line = LineReader.readLine(is);
+				if ( line != null ) {
+					String[] parts = line.split("\t");
+					return new Person(parts[0], parts[1].toCharArray(),
+							parts[2], parts[3], parts[4],
+							Arrays.asList(new Address(parts[5], parts[6], parts[7], parts[8])),
+							Integer.parseInt(parts[9]));
+				} else {
+					return null;
+				}
+			} catch ( Exception e ) {
+				return new BadIdentity();
+			}
+		}
+	}
+
+	@Test
+	@Ignore("A benchmark; allocation counts move with the JIT, so it is run by hand")
+	public void testAllocationPerIdentity() throws IOException {
+		// allocation counting is HotSpot's, not part of the standard management API
+		Assume.assumeTrue(countsAllocations());
+
+		// only the lines in FileIdentityReader's layout, so that the cost of failed parses isn't measured
+		StringBuilder lines = new StringBuilder();
+		for ( String line : Files.readAllLines(Paths.get("test/identities.csv")) ) {
+			String[] parts = line.trim().split("\t");
+			if ( parts.length == 10 && parts[9].matches("\\d+") ) {
+				lines.append(line).append('\n');
+			}
+		}
+		byte[] file = lines.toString().getBytes();
+		IdentityReader split = new SplitIdentityReader();
+		IdentityReader cursor = new FileIdentityReader();
+
+		// warm up, then measure
+		bytesPerIdentity(file, split);
+		bytesPerIdentity(file, cursor);
+
+		long splitBytes = bytesPerIdentity(file, split);
+		long cursorBytes = bytesPerIdentity(file, cursor);
+		System.out.println("Bytes allocated per identity with split: " + splitBytes);
+		System.out.println("Bytes allocated per identity with cursor: " + cursorBytes);
+		Assert.assertTrue(cursorBytes < splitBytes);
+	}
+
+	private boolean countsAllocations() {
+		try {
+			return Class.forName("com.sun.management.ThreadMXBean").isInstance(ManagementFactory.getThreadMXBean());
+		} catch ( ClassNotFoundException e ) {
+			return false;
+		}
+	}
+
+	private long bytesPerIdentity(byte[] file, IdentityReader reader) throws IOException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		int count = 0;
+		for ( int i = 0; i < 100; i++ ) {
+			InputStream is = new BufferedLineInputStream(new ByteArrayInputStream(file));
+			while ( reader.read(is) != null ) {
+				count++;
+			}
+		}
+		return ( threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before ) / count;
+	}
+
+	private FieldCursor cursor(String line) {
+		byte[] bytes = line.getBytes();
+		FieldCursor fields = new FieldCursor();
+		fields.reset(bytes, 0, bytes.length);
+		return fields;
+	}
+}
@@ -0,0 +1,41 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdAllocatorTest {
+	@Test
+	public void testIdsAreUniqueAcrossThreads() throws InterruptedException {
+		IdAllocator ids = new IdAllocator(16);
+		Set<Long> seen = ConcurrentHashMap.newKeySet();
+		List<Thread> threads = new ArrayList<>();
+		for ( int i = 0; i < 8; i++ ) {
+			threads.add(new Thread(() -> {
+				for ( int j = 0; j < 10000; j++ ) {
+					seen.add(ids.nextId());
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for ( Thread thread : threads ) {
+			thread.join();
+		}
+		Assert.assertEquals(80000, seen.size());
+	}
+
+	@Test
+	public void testIdsIncreaseWithinAThread() {
+		IdAllocator ids = new IdAllocator(4);
+		long last = 0;
+		for ( int i = 0; i < 100; i++ ) {
+			long id = ids.nextId();
+			Assert.assertTrue(id > last);
+			last = id;
+		}
+	}
+}
@@ -125,16 +125,18 @@ public class IdentityPipelineTest {
 	
 	private final PhoneNumberFormatter pnf = new PhoneNumberFormatter() {
 		@Override
-		public void format(Identity identity) {
+		public Identity format(Identity identity) {
 			Generator.waitFor(50);
+			return identity;
 		}
 	};
 	
 	private final EmailFormatter ef = new EmailFormatter() {
 		
 		@Override
-		public void format(Identity identity) {
+		public Identity format(Identity identity) {
 			Generator.waitFor(50);
+			return identity;
 		}
 	};
 	
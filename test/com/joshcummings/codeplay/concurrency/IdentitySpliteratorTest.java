@@ -0,0 +1,66 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdentitySpliteratorTest {
+	private static final int NUMBER_OF_IDENTITIES = 1000;
+
+	private static class CountingIdentityReader implements IdentityReader {
+		private int remaining = NUMBER_OF_IDENTITIES;
+
+		@Override
+		public Identity read(InputStream is) {
+			if ( remaining-- > 0 ) {
+				return new Person("user", new char[0], "User Name", null, null, Collections.emptyList(), 34);
+			}
+			return null;
+		}
+	}
+
+	@Test
+	public void testSplitsIntoSizedBatches() {
+		Spliterator<Identity> spliterator =
+				new IdentityIterable(new ByteArrayInputStream(new byte[0]), new CountingIdentityReader(), 64).spliterator();
+
+		Spliterator<Identity> batch = spliterator.trySplit();
+		Assert.assertEquals(64, batch.getExactSizeIfKnown());
+		Assert.assertTrue(batch.hasCharacteristics(Spliterator.SUBSIZED | Spliterator.NONNULL | Spliterator.ORDERED));
+		Assert.assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+
+		int total = 64;
+		while ( ( batch = spliterator.trySplit() ) != null ) {
+			total += batch.getExactSizeIfKnown();
+		}
+		Assert.assertEquals(NUMBER_OF_IDENTITIES, total);
+		Assert.assertEquals(0, spliterator.estimateSize());
+	}
+
+	@Test
+	public void testParallelStreamSeesEveryIdentityAcrossThreads() {
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		Set<Long> ids = StreamSupport.stream(
+					new IdentityIterable(new ByteArrayInputStream(new byte[0]), new CountingIdentityReader(), 8).spliterator(), true)
+				.peek(identity -> {
+					threads.add(Thread.currentThread());
+					Generator.waitFor(1);
+				})
+				.map(Identity::getId)
+				.collect(Collectors.toSet());
+
+		Assert.assertEquals(NUMBER_OF_IDENTITIES, ids.size());
+		// with one core, the common pool has no workers of its own and the caller does everything
+		if ( Runtime.getRuntime().availableProcessors() > 1 ) {
+			Assert.assertTrue("Only " + threads.size() + " thread took part", threads.size() > 1);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReadAheadIdentityIterableTest {
+	@Test
+	public void testSameIdentitiesAsIdentityIterable() throws IOException {
+		IdentityReader reader = new FileIdentityReader();
+		List<String> expected;
+		try ( InputStream is = new FileInputStream("test/identities.csv") ) {
+			expected = StreamSupport.stream(new IdentityIterable(is, reader).spliterator(), false)
+					.map(Identity::getUsername)
+					.collect(Collectors.toList());
+		}
+
+		try ( InputStream is = new FileInputStream("test/identities.csv");
+				ReadAheadIdentityIterable identities = new ReadAheadIdentityIterable(is, reader, 16, 8) ) {
+			List<String> actual = StreamSupport.stream(identities.spliterator(), false)
+					.map(Identity::getUsername)
+					.collect(Collectors.toList());
+			Assert.assertEquals(expected, actual);
+			Assert.assertFalse(identities.hasNext());
+		}
+	}
+
+	@Test
+	public void testReaderPausesWhenBufferIsFull() throws InterruptedException {
+		AtomicInteger reads = new AtomicInteger();
+		IdentityReader endless = is -> {
+			reads.incrementAndGet();
+			return new Person("user", new char[0], "User Name", null, null, Collections.emptyList(), 34);
+		};
+
+		try ( ReadAheadIdentityIterable identities = new ReadAheadIdentityIterable(new ByteArrayInputStream(new byte[0]), endless, 10, 8) ) {
+			Thread.sleep(200);
+			// ten in the buffer and one waiting to get in
+			Assert.assertEquals(11, reads.get());
+
+			identities.next();
+			Thread.sleep(200);
+			Assert.assertEquals(12, reads.get());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReaderFailureReachesConsumer() {
+		IdentityReader broken = is -> { throw new IllegalArgumentException("broken"); };
+		try ( ReadAheadIdentityIterable identities = new ReadAheadIdentityIterable(new ByteArrayInputStream(new byte[0]), broken) ) {
+			identities.hasNext();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReaderErrorReachesConsumer() {
+		IdentityReader broken = is -> { throw new StackOverflowError(); };
+		try ( ReadAheadIdentityIterable identities = new ReadAheadIdentityIterable(new ByteArrayInputStream(new byte[0]), broken) ) {
+			identities.hasNext();
+		}
+	}
+
+	@Test
+	public void testCloseWakesAWaitingConsumer() throws InterruptedException {
+		CountDownLatch stuck = new CountDownLatch(1);
+		IdentityReader slow = is -> {
+			// like a blocking socket read, this doesn't notice the interrupt
+			while ( true ) {
+				try {
+					stuck.await();
+					return null;
+				} catch ( InterruptedException e ) {
+					// keep waiting
+				}
+			}
+		};
+
+		ReadAheadIdentityIterable identities = new ReadAheadIdentityIterable(new ByteArrayInputStream(new byte[0]), slow);
+		AtomicBoolean hasNext = new AtomicBoolean(true);
+		Thread consumer = new Thread(() -> hasNext.set(identities.hasNext()));
+		consumer.start();
+		try {
+			Thread.sleep(200);
+			identities.close();
+			consumer.join(2000);
+			Assert.assertFalse("consumer still waiting after close", consumer.isAlive());
+			Assert.assertFalse(hasNext.get());
+		} finally {
+			stuck.countDown();
+		}
+	}
+}
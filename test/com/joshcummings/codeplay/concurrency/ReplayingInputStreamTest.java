@@ -0,0 +1,52 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReplayingInputStreamTest {
+	@Test
+	public void testEachReplayStartsAtTheBeginningOfTheRecord() throws IOException {
+		ReplayingInputStream record = new ReplayingInputStream()
+				.begin(new BufferedLineInputStream(new ByteArrayInputStream(" first\tline \nsecond\n".getBytes())));
+
+		Assert.assertEquals("first", LineReader.readFields(record).nextString());
+
+		InputStream one = record.replay();
+		InputStream two = record.replay();
+		Assert.assertEquals("first", LineReader.readFields(one).nextString());
+		Assert.assertEquals("first\tline", LineReader.readLine(two));
+		Assert.assertNull(LineReader.readFields(one));
+	}
+
+	@Test
+	public void testReplaysSurviveTheNextRecord() throws IOException {
+		InputStream is = new ByteArrayInputStream("first\nsecond\n".getBytes());
+		ReplayingInputStream record = new ReplayingInputStream();
+
+		record.begin(is);
+		Assert.assertEquals("first", LineReader.readLine(record));
+		InputStream straggler = record.replay();
+
+		record.begin(is);
+		Assert.assertEquals("second", LineReader.readLine(record));
+		Assert.assertEquals("first", LineReader.readLine(straggler));
+		Assert.assertEquals("second", LineReader.readLine(record.replay()));
+	}
+
+	@Test
+	public void testRecordIsCutOffAtTheLimit() throws IOException {
+		ReplayingInputStream record = new ReplayingInputStream(4)
+				.begin(new ByteArrayInputStream("a long line\n".getBytes()));
+
+		Assert.assertEquals("a long line", LineReader.readLine(record));
+		Assert.assertTrue(record.isOverflowed());
+
+		byte[] replayed = new byte[16];
+		Assert.assertEquals(4, record.replay().read(replayed));
+		Assert.assertEquals(4, record.detach().read(replayed));
+	}
+}
@@ -0,0 +1,83 @@
+package com.joshcummings.codeplay.concurrency;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StringPoolTest {
+	@Test
+	public void testBytesAndStringsShareACopy() {
+		StringPool pool = new StringPool(16);
+		Utf8Decoder decoder = new Utf8Decoder();
+
+		String city = pool.intern(new String("Boblandia"));
+		byte[] bytes = "in Boblandia".getBytes(StandardCharsets.UTF_8);
+		Assert.assertSame(city, pool.intern(bytes, 3, 9, decoder));
+		Assert.assertSame(city, pool.intern(new String("Boblandia")));
+
+		String accented = pool.intern("Bogot\u00e1".getBytes(StandardCharsets.UTF_8), 0, 7, decoder);
+		Assert.assertEquals("Bogot\u00e1", accented);
+		Assert.assertSame(accented, pool.intern(new String("Bogot\u00e1")));
+
+		Assert.assertNull(pool.intern(null));
+	}
+
+	@Test
+	public void testPoolIsBounded() {
+		StringPool pool = new StringPool(8);
+		for ( int i = 0; i < 10000; i++ ) {
+			Assert.assertEquals(String.valueOf(i), pool.intern(String.valueOf(i)));
+		}
+
+		// a value that keeps coming back stays in the pool even while others churn through
+		String hot = pool.intern(new String("UT"));
+		for ( int i = 0; i < 100; i++ ) {
+			Assert.assertSame(hot, pool.intern(new String("UT")));
+			pool.intern(String.valueOf(i));
+		}
+	}
+
+	@Test
+	public void testConcurrentInternsAreConsistent() {
+		StringPool pool = new StringPool(64);
+		Set<String> wrong = ConcurrentHashMap.newKeySet();
+		IntStream.range(0, 100000).parallel().forEach(i -> {
+			String value = String.valueOf(i % 200);
+			String interned = pool.intern(new String(value));
+			if ( !value.equals(interned) ) {
+				wrong.add(value);
+			}
+		});
+		Assert.assertEquals(Collections.emptySet(), wrong);
+	}
+
+	@Test
+	public void testReadersShareAddressFields() throws IOException {
+		List<Identity> identities;
+		try ( InputStream is = new FileInputStream("test/identities.csv") ) {
+			identities = StreamSupport.stream(new IdentityIterable(is, new FileIdentityReader()).spliterator(), false)
+					.filter(identity -> !( identity instanceof BadIdentity ))
+					.collect(Collectors.toList());
+		}
+
+		List<String> cities = new ArrayList<>();
+		identities.forEach(identity -> identity.getAddresses().forEach(address -> cities.add(address.getCity())));
+
+		Set<String> copies = Collections.newSetFromMap(new IdentityHashMap<>());
+		copies.addAll(cities);
+		Assert.assertEquals(cities.stream().distinct().count(), copies.size());
+	}
+}
@@ -0,0 +1,109 @@
+package com.joshcummings.codeplay.concurrency.aggregation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.Identity;
+import com.joshcummings.codeplay.concurrency.IdentityService;
+import com.joshcummings.codeplay.concurrency.Person;
+import com.joshcummings.codeplay.concurrency.SimplePhoneNumberFormatter;
+import com.joshcummings.codeplay.concurrency.single.SimpleIdentityService;
+
+public class IdentityServiceTest {
+	private Person bob(String phoneNumber, Address... addresses) {
+		return new Person("bob", "asdf".toCharArray(), "Bob Bobson", phoneNumber, "bob@bobson.com",
+				Arrays.asList(addresses), 34);
+	}
+
+	private Address address() {
+		return new Address("123 Main St", "Boblandia", "UT", "84000");
+	}
+
+	@Test
+	public void testFormattingLeavesTheOriginalAlone() {
+		Person original = bob("(555) 555-5555");
+		Identity formatted = new SimplePhoneNumberFormatter().format(original);
+
+		Assert.assertEquals("(555) 555-5555", original.getPhoneNumber());
+		Assert.assertEquals("5555555555", formatted.getPhoneNumber());
+		Assert.assertEquals(original.getId(), formatted.getId());
+	}
+
+	@Test
+	public void testConcurrentMergesAreAllKept() throws InterruptedException {
+		ThreadSafeIdentityService service = new ThreadSafeIdentityService();
+		Person first = bob(null, address());
+		service.persistOrUpdateBestMatch(first);
+
+		int threads = 8;
+		int perThread = 250;
+		List<Thread> mergers = new ArrayList<>();
+		for ( int i = 0; i < threads; i++ ) {
+			mergers.add(new Thread(() -> {
+				for ( int j = 0; j < perThread; j++ ) {
+					Assert.assertTrue(service.persistOrUpdateBestMatch(bob("5555555555", address())));
+				}
+			}));
+		}
+		mergers.forEach(Thread::start);
+		for ( Thread merger : mergers ) {
+			merger.join();
+		}
+
+		List<Identity> stored = service.search(i -> true);
+		Assert.assertEquals(1, stored.size());
+		Assert.assertEquals(first.getId(), stored.get(0).getId());
+		Assert.assertEquals(1 + threads * perThread, stored.get(0).getAddresses().size());
+		Assert.assertEquals("5555555555", stored.get(0).getPhoneNumber());
+
+		// whoever had the first version still sees it as it was
+		Assert.assertEquals(1, first.getAddresses().size());
+		Assert.assertNull(first.getPhoneNumber());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testAddressesCannotBeChangedInPlace() {
+		bob(null, address()).getAddresses().addAll(Collections.singletonList(address()));
+	}
+
+	@Test
+	public void testMergesIntoTheHighestScoringMatch() {
+		for ( IdentityService service : Arrays.<IdentityService>asList(new SimpleIdentityService(), new StreamedIdentityService()) ) {
+			Person alice = new Person("alice", null, "Alice Bobson", "5555555555", "shared@bobson.com", Arrays.asList(address()), 30);
+			Person bob = new Person("bob", null, "Bob Bobson", "5555555555", "bob@bobson.com", Arrays.asList(address()), 34);
+			Assert.assertFalse(service.persistOrUpdateBestMatch(alice));
+			Assert.assertFalse(service.persistOrUpdateBestMatch(bob));
+
+			// email and phone number match alice for 65; name and phone number match bob for 50
+			service.persistOrUpdateBestMatch(new Person("bobby", null, "Bob Bobson", "5555555555", "shared@bobson.com",
+					Arrays.asList(address()), 34));
+
+			Assert.assertEquals(2, service.getOne(i -> i.getId() == alice.getId()).getAddresses().size());
+			Assert.assertEquals(1, service.getOne(i -> i.getId() == bob.getId()).getAddresses().size());
+		}
+	}
+
+	@Test
+	public void testStreamedSearchWhileAdding() throws InterruptedException {
+		StreamedIdentityService service = new StreamedIdentityService();
+		int adds = 2000;
+		Thread adding = new Thread(() -> {
+			for ( int i = 0; i < adds; i++ ) {
+				service.persistOrUpdateBestMatch(new Person("user" + i, null, "User " + i, null, "user" + i + "@bobson.com",
+						Arrays.asList(address()), 30));
+			}
+		});
+		adding.start();
+		while ( adding.isAlive() ) {
+			Assert.assertTrue(service.search(i -> i.getName() != null).size() <= adds);
+		}
+		adding.join();
+		Assert.assertEquals(adds, service.search(i -> true).size());
+	}
+}
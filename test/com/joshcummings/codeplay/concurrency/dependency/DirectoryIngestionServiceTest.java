@@ -0,0 +1,114 @@
+package com.joshcummings.codeplay.concurrency.dependency;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectoryIngestionServiceTest {
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("landing");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for ( Path path : Files.list(directory).collect(Collectors.toList()) ) {
+			Files.delete(path);
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testEveryFileIngestedOnceWithinTheLimit() throws Exception {
+		int files = 12;
+		CountDownLatch done = new CountDownLatch(files);
+		Set<Path> ingested = ConcurrentHashMap.newKeySet();
+		AtomicInteger concurrent = new AtomicInteger();
+		AtomicInteger maxConcurrent = new AtomicInteger();
+		AtomicInteger duplicates = new AtomicInteger();
+
+		DirectoryIngestionService.FileIngester ingester = file -> {
+			int now = concurrent.incrementAndGet();
+			maxConcurrent.accumulateAndGet(now, Math::max);
+			try {
+				Thread.sleep(50);
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+			if ( !ingested.add(file) ) {
+				duplicates.incrementAndGet();
+			}
+			concurrent.decrementAndGet();
+			done.countDown();
+		};
+
+		// one file is already there when the service starts
+		drop("early.csv");
+
+		try ( DirectoryIngestionService service = new DirectoryIngestionService(directory, ingester, 2, 4) ) {
+			service.start();
+			for ( int i = 1; i < files; i++ ) {
+				drop("partner-" + i + ".csv");
+			}
+			Files.write(directory.resolve("partner-99.csv.part"), Arrays.asList("still being written"));
+
+			Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		}
+
+		Assert.assertEquals(files, ingested.size());
+		Assert.assertEquals(0, duplicates.get());
+		Assert.assertFalse(ingested.contains(directory.resolve("partner-99.csv.part")));
+		Assert.assertTrue(maxConcurrent.get() <= 2);
+	}
+
+	@Test
+	public void testFailedOrReplacedFileIsIngestedAgain() throws Exception {
+		BlockingQueue<Path> attempts = new LinkedBlockingQueue<>();
+		AtomicInteger calls = new AtomicInteger();
+		DirectoryIngestionService.FileIngester ingester = file -> {
+			attempts.add(file);
+			if ( calls.getAndIncrement() == 0 ) {
+				throw new IOException("The first one fails");
+			}
+		};
+
+		try ( DirectoryIngestionService service = new DirectoryIngestionService(directory, ingester, 1, 1) ) {
+			service.start();
+			drop("partner.csv");
+			Assert.assertNotNull(attempts.poll(10, TimeUnit.SECONDS));
+
+			// dropped again after failing, and then again after succeeding
+			for ( int i = 0; i < 2; i++ ) {
+				Thread.sleep(50);
+				drop("partner.csv");
+				Assert.assertNotNull(attempts.poll(10, TimeUnit.SECONDS));
+			}
+		}
+		Assert.assertEquals(3, calls.get());
+	}
+
+	private void drop(String name) throws IOException {
+		List<String> lines = Arrays.asList("bob\tasdf\tBob Bobson");
+		Path partial = directory.resolve(name + ".tmp");
+		Files.write(partial, lines);
+		Files.move(partial, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,113 @@
+package com.joshcummings.codeplay.concurrency.splitting;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.joshcummings.codeplay.concurrency.FileIdentityReader;
+import com.joshcummings.codeplay.concurrency.IdentityIterable;
+
+public class BlockGzipInputStreamTest {
+	private ExecutorService pool = Executors.newFixedThreadPool(4);
+
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testReadableAsPlainGzip() throws IOException {
+		byte[] original = Files.readAllBytes(Paths.get("test/identities.csv"));
+		byte[] compressed = compress(original, 4 * 1024);
+
+		Assert.assertArrayEquals(original, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+	}
+
+	@Test
+	public void testBlocksInflatedInOrder() throws IOException {
+		byte[] original = Files.readAllBytes(Paths.get("test/identities.csv"));
+		for ( int blockSize : new int[] { 1, 100, 4 * 1024, 1024 * 1024 } ) {
+			byte[] compressed = compress(original, blockSize);
+			Assert.assertArrayEquals(original, readAll(new BlockGzipInputStream(new ByteArrayInputStream(compressed), pool, 8)));
+		}
+	}
+
+	@Test
+	public void testPlainGzipStillReadable() throws IOException {
+		byte[] original = Files.readAllBytes(Paths.get("test/identities.csv"));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try ( OutputStream os = new GZIPOutputStream(baos) ) {
+			os.write(original);
+		}
+
+		Assert.assertArrayEquals(original, readAll(new BlockGzipInputStream(new ByteArrayInputStream(baos.toByteArray()), pool, 8)));
+	}
+
+	@Test
+	public void testIdentitiesReadFromCompressedInput() throws IOException {
+		byte[] original = Files.readAllBytes(Paths.get("test/identities.csv"));
+		InputStream is = new BlockGzipInputStream(new ByteArrayInputStream(compress(original, 4 * 1024)), pool, 8);
+
+		long count = StreamSupport.stream(new IdentityIterable(is, new FileIdentityReader()).spliterator(), false).count();
+		Assert.assertEquals(960, count);
+	}
+
+	@Test(expected = IOException.class)
+	public void testCorruptBlockFails() throws IOException {
+		byte[] compressed = compress(Files.readAllBytes(Paths.get("test/identities.csv")), 4 * 1024);
+		compressed[30] ^= 0xff;
+		readAll(new BlockGzipInputStream(new ByteArrayInputStream(compressed), pool, 8));
+	}
+
+	@Test(expected = IOException.class)
+	public void testHugeBlockIndexFails() throws IOException {
+		byte[] compressed = compress(Files.readAllBytes(Paths.get("test/identities.csv")), 4 * 1024);
+		// the first member's size, in its extra field
+		ByteBuffer.wrap(compressed).order(ByteOrder.LITTLE_ENDIAN).putInt(16, Integer.MAX_VALUE);
+		readAll(new BlockGzipInputStream(new ByteArrayInputStream(compressed), pool, 8));
+	}
+
+	@Test(expected = IOException.class)
+	public void testHugeInflatedSizeFails() throws IOException {
+		byte[] compressed = compress(Files.readAllBytes(Paths.get("test/identities.csv")), 4 * 1024);
+		ByteBuffer member = ByteBuffer.wrap(compressed).order(ByteOrder.LITTLE_ENDIAN);
+		// the first member's uncompressed size, the last four bytes of its trailer
+		member.putInt(member.getInt(16) - 4, Integer.MAX_VALUE);
+		readAll(new BlockGzipInputStream(new ByteArrayInputStream(compressed), pool, 8));
+	}
+
+	private byte[] compress(byte[] original, int blockSize) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try ( OutputStream os = new BlockGzipOutputStream(baos, blockSize) ) {
+			os.write(original);
+		}
+		return baos.toByteArray();
+	}
+
+	private byte[] readAll(InputStream is) throws IOException {
+		try ( InputStream in = is ) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] chunk = new byte[1000];
+			int n;
+			while ( ( n = in.read(chunk) ) != -1 ) {
+				baos.write(chunk, 0, n);
+			}
+			return baos.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.joshcummings.codeplay.concurrency.splitting;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.joshcummings.codeplay.concurrency.FileIdentityReader;
+import com.joshcummings.codeplay.concurrency.Identity;
+import com.joshcummings.codeplay.concurrency.IdentityIterable;
+import com.joshcummings.codeplay.concurrency.IdentityReader;
+
+public class MappedFileIdentityReaderTest {
+	private IdentityReader reader = new FileIdentityReader();
+
+	@Test
+	public void testSingleRegion() throws IOException {
+		assertSameIdentities(1);
+	}
+
+	@Test
+	public void testOneRegionPerCore() throws IOException {
+		assertSameIdentities(Runtime.getRuntime().availableProcessors());
+	}
+
+	@Test
+	public void testMoreRegionsThanLines() throws IOException {
+		assertSameIdentities(5000);
+	}
+
+	private void assertSameIdentities(int regions) throws IOException {
+		List<String> expected;
+		try ( InputStream is = new FileInputStream("test/identities.csv") ) {
+			expected = StreamSupport.stream(new IdentityIterable(is, reader).spliterator(), false)
+					.map(this::describe)
+					.sorted()
+					.collect(Collectors.toList());
+		}
+
+		List<String> actual = new MappedFileIdentityReader(reader, regions)
+				.read(Paths.get("test/identities.csv"))
+				.map(this::describe)
+				.sorted()
+				.collect(Collectors.toList());
+
+		Assert.assertEquals(expected, actual);
+	}
+
+	private String describe(Identity identity) {
+		return identity.getUsername() + "|" + identity.getName() + "|" + identity.getEmailAddress();
+	}
+}
@@ -1,16 +1,25 @@
 package com.joshcummings.codeplay.concurrency.splitting;
 
 import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.joshcummings.codeplay.concurrency.BufferedLineInputStream;
+import com.joshcummings.codeplay.concurrency.FileIdentityReader;
 import com.joshcummings.codeplay.concurrency.Identity;
 import com.joshcummings.codeplay.concurrency.IdentityReader;
 import com.joshcummings.codeplay.concurrency.MalformedIdentityRepository;
+import com.joshcummings.codeplay.concurrency.NewFileIdentityReader;
+import com.joshcummings.codeplay.concurrency.NoPasswordIdentityReader;
 import com.joshcummings.codeplay.concurrency.RandomIdentityReader;
 
 public class MultiStrategyIdentityReaderTest {
@@ -57,6 +66,67 @@ public class MultiStrategyIdentityReaderTest {
 		readIdentities(sg, reader);
 	}
 	
+	@Test
+	public void testFormatDetection() throws IOException {
+		FormatDetectingIdentityReader reader = new FormatDetectingIdentityReader(
+				Arrays.asList(new NewFileIdentityReader(), new FileIdentityReader(), new NoPasswordIdentityReader()),
+				new SingleThreadedScatterGatherer(), malformed, 100);
+		
+		int count = 0;
+		try ( InputStream is = new BufferedLineInputStream(new FileInputStream("test/identities.csv")) ) {
+			while ( reader.read(is) != null ) {
+				count++;
+			}
+		}
+		
+		Assert.assertEquals(960, count);
+		Assert.assertTrue(reader.getDetectedReader().get() instanceof FileIdentityReader);
+	}
+	
+	@Test
+	public void testFallbackThatReadsNothingDoesNotEndTheStream() throws IOException {
+		IdentityReader empty = is -> null;
+		FormatDetectingIdentityReader reader = new FormatDetectingIdentityReader(
+				Arrays.asList(new NewFileIdentityReader(), empty, new FileIdentityReader()),
+				new SingleThreadedScatterGatherer(), malformed, 100);
+
+		int count = 0;
+		try ( InputStream is = new BufferedLineInputStream(new FileInputStream("test/identities.csv")) ) {
+			while ( reader.read(is) != null ) {
+				count++;
+			}
+		}
+
+		// the no-password lines go to the malformed repository, since nothing here can read them
+		Assert.assertEquals(768, count);
+		Assert.assertTrue(reader.getDetectedReader().get() instanceof FileIdentityReader);
+	}
+	
+	@Test
+	public void testAdaptiveOrdering() throws IOException {
+		IdentityReader noPassword = new NoPasswordIdentityReader();
+		AdaptiveIdentityReader reader = new AdaptiveIdentityReader(
+				Arrays.asList(new NewFileIdentityReader(), new FileIdentityReader(), noPassword),
+				new SingleThreadedScatterGatherer(), malformed);
+		
+		// only the lines in the no-password layout
+		StringBuilder lines = new StringBuilder();
+		for ( String line : Files.readAllLines(Paths.get("test/identities.csv")) ) {
+			if ( line.trim().split("\t").length == 9 ) {
+				lines.append(line).append('\n');
+			}
+		}
+		
+		int count = 0;
+		InputStream is = new BufferedLineInputStream(new ByteArrayInputStream(lines.toString().getBytes()));
+		while ( reader.read(is) != null ) {
+			count++;
+		}
+		
+		Assert.assertEquals(192, count);
+		Assert.assertSame(noPassword, reader.getOrder().get(0));
+	}
+	
 	private void readIdentities(ScatterGatherer sg, MultiStrategyIdentityReader reader) {
 		for (int i = 0; i < NUM_IDENTITIES; i++) {
 			System.out.println("Identity #" + i);
@@ -0,0 +1,95 @@
+package com.joshcummings.codeplay.concurrency.throttling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+import com.joshcummings.codeplay.concurrency.NoValidAddressesException;
+import com.joshcummings.codeplay.concurrency.throttle.AdaptiveLimitingAddressVerifier;
+import com.joshcummings.codeplay.concurrency.throttle.BackpressureAddressVerifier;
+import com.joshcummings.codeplay.concurrency.throttle.ConnectionLimitingAddressVerifier;
+
+public class AdaptiveLimitingAddressVerifierTest {
+	private static final int KNEE = 4;
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger slowdown = new AtomicInteger(1);
+
+	// answers in 5ms until more than KNEE calls are in at once, and then slows down in proportion
+	private final AddressVerifier backend = new AddressVerifier() {
+		@Override
+		public void verify(List<Address> addresses) {
+			int concurrent = active.incrementAndGet();
+			try {
+				Thread.sleep(5L * slowdown.get() * Math.max(KNEE, concurrent) / KNEE);
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			} finally {
+				active.decrementAndGet();
+			}
+			addresses.forEach(address -> address.setVerified(true));
+		}
+	};
+
+	private void hammer(AddressVerifier verifier, int threads, long millis) throws InterruptedException {
+		AtomicBoolean running = new AtomicBoolean(true);
+		List<Thread> callers = new ArrayList<>();
+		for ( int i = 0; i < threads; i++ ) {
+			callers.add(new Thread(() -> {
+				while ( running.get() ) {
+					try {
+						verifier.verify(Arrays.asList(new Address("123 Main St", "Boblandia", "UT", "84000")));
+					} catch ( NoValidAddressesException e ) {
+						// rejected; try again
+					}
+				}
+			}));
+		}
+		callers.forEach(Thread::start);
+		Thread.sleep(millis);
+		running.set(false);
+		for ( Thread caller : callers ) {
+			caller.join();
+		}
+	}
+
+	@Test
+	public void testLimitGrowsToTheKneeAndNoFurther() throws InterruptedException {
+		AdaptiveLimitingAddressVerifier verifier = new AdaptiveLimitingAddressVerifier(backend,
+				timed -> new ConnectionLimitingAddressVerifier(timed, 1), 1, 1, 64);
+		hammer(verifier, 32, 2000);
+
+		int limit = verifier.getLimit();
+		Assert.assertTrue("Limit was " + limit, limit >= 2 && limit <= KNEE * 3);
+	}
+
+	@Test
+	public void testLimitComesDownWhenTheBackendSlows() throws InterruptedException {
+		AdaptiveLimitingAddressVerifier verifier = new AdaptiveLimitingAddressVerifier(backend,
+				timed -> new ConnectionLimitingAddressVerifier(timed, 1), 1, 1, 64);
+		hammer(verifier, 32, 1000);
+		int before = verifier.getLimit();
+
+		slowdown.set(4);
+		hammer(verifier, 32, 1000);
+
+		Assert.assertTrue(verifier.getLimit() < before);
+	}
+
+	@Test
+	public void testRejectionsBringTheLimitDown() throws InterruptedException {
+		AdaptiveLimitingAddressVerifier verifier = new AdaptiveLimitingAddressVerifier(backend,
+				timed -> new BackpressureAddressVerifier(timed, 16, 1), 16, 1, 64);
+		hammer(verifier, 32, 1000);
+		verifier.close();
+
+		Assert.assertTrue(verifier.getLimit() < 16);
+	}
+}
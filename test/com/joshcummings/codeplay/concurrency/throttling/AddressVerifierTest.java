@@ -19,6 +19,7 @@ import com.joshcummings.codeplay.concurrency.AddressVerifier;
 import com.joshcummings.codeplay.concurrency.throttle.BackpressureAddressVerifier;
 import com.joshcummings.codeplay.concurrency.throttle.ConnectionLimitingAddressVerifier;
 import com.joshcummings.codeplay.concurrency.throttle.CyclicBarrierBatcherAddressVerifier;
+import com.joshcummings.codeplay.concurrency.throttle.LingerBatcherAddressVerifier;
 import com.joshcummings.codeplay.concurrency.throttle.PhaserBatcherAddressVerifier;
 
 public class AddressVerifierTest {
@@ -131,6 +132,12 @@ public class AddressVerifierTest {
 		hammer(pbav, NUMBER_OF_ADDRESSES);
 	}
 	
+	@Test
+	public void testLinger() {
+		LingerBatcherAddressVerifier lbav = new LingerBatcherAddressVerifier(av, 100, 50);
+		hammer(lbav, NUMBER_OF_ADDRESSES);
+	}
+	
 	private void hammer(AddressVerifier av, int numberOfAddresses) {	
 		Random rand = new Random(676325345568L);
 		int total = 0;
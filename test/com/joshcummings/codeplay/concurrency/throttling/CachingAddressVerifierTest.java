@@ -0,0 +1,154 @@
+package com.joshcummings.codeplay.concurrency.throttling;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+import com.joshcummings.codeplay.concurrency.NoValidAddressesException;
+import com.joshcummings.codeplay.concurrency.throttle.CachingAddressVerifier;
+
+public class CachingAddressVerifierTest {
+	private final AtomicInteger delegated = new AtomicInteger();
+
+	// only addresses on Main verify
+	private final AddressVerifier av = new AddressVerifier() {
+		@Override
+		public void verify(List<Address> addresses) {
+			for ( Address address : addresses ) {
+				delegated.incrementAndGet();
+				address.setVerified(address.getAddress1().toUpperCase().contains("MAIN"));
+			}
+		}
+	};
+
+	private Address address(String address1) {
+		return new Address(address1, "Boblandia", "UT", "84000");
+	}
+
+	@Test
+	public void testOnlyMissesReachTheDelegate() {
+		CachingAddressVerifier cav = new CachingAddressVerifier(av, 100, 1, TimeUnit.MINUTES);
+		cav.verify(Arrays.asList(address("123 Main St."), address("9 Elm St")));
+
+		Address same = address("123  MAIN ST");
+		Address unverified = address("9 elm st.");
+		cav.verify(Arrays.asList(same, unverified));
+
+		Assert.assertEquals(2, delegated.get());
+		Assert.assertEquals(2, cav.getHits());
+		Assert.assertEquals(2, cav.getMisses());
+		Assert.assertTrue(same.isVerified());
+		Assert.assertFalse(unverified.isVerified());
+	}
+
+	@Test
+	public void testExpiredEntriesAreVerifiedAgain() throws InterruptedException {
+		CachingAddressVerifier cav = new CachingAddressVerifier(av, 100, 50, TimeUnit.MILLISECONDS);
+		cav.verify(Arrays.asList(address("123 Main St")));
+		Thread.sleep(100);
+		cav.verify(Arrays.asList(address("123 Main St")));
+
+		Assert.assertEquals(2, delegated.get());
+		Assert.assertEquals(0, cav.getHits());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsDropped() {
+		CachingAddressVerifier cav = new CachingAddressVerifier(av, 2, 1, TimeUnit.MINUTES);
+		cav.verify(Arrays.asList(address("1 Main St"), address("2 Main St")));
+		cav.verify(Arrays.asList(address("1 Main St")));
+		cav.verify(Arrays.asList(address("3 Main St")));
+
+		Assert.assertEquals(2, cav.size());
+		cav.verify(Arrays.asList(address("1 Main St")));
+		Assert.assertEquals(3, delegated.get());
+		cav.verify(Arrays.asList(address("2 Main St")));
+		Assert.assertEquals(4, delegated.get());
+	}
+
+	@Test
+	public void testCacheSurvivesARestart() throws IOException {
+		Path directory = Files.createTempDirectory("address-cache");
+		Path file = directory.resolve("addresses.cache");
+		try {
+			CachingAddressVerifier first = new CachingAddressVerifier(av, 100, 1, TimeUnit.HOURS, file);
+			first.verify(Arrays.asList(address("123 Main St"), address("9 Elm St")));
+			first.close();
+
+			CachingAddressVerifier second = new CachingAddressVerifier(av, 100, 1, TimeUnit.HOURS, file);
+			Address unverified = address("9 Elm St");
+			second.verify(Arrays.asList(address("123 Main St"), unverified));
+
+			Assert.assertEquals(2, delegated.get());
+			Assert.assertEquals(2, second.getHits());
+			Assert.assertFalse(unverified.isVerified());
+		} finally {
+			Files.deleteIfExists(file);
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testFailedCallStopsListening() {
+		CachingAddressVerifier cav = new CachingAddressVerifier(new AddressVerifier() {
+			@Override
+			public void verify(List<Address> addresses) {
+				throw new NoValidAddressesException();
+			}
+		}, 100, 1, TimeUnit.MINUTES);
+		Address address = address("123 Main St");
+		try {
+			cav.verify(Arrays.asList(address));
+			Assert.fail("The backend is failing");
+		} catch ( NoValidAddressesException e ) {
+			// expected
+		}
+		// verified some other way afterward, which the cache shouldn't hear about
+		address.setVerified(true);
+		Assert.assertEquals(0, cav.size());
+	}
+
+	@Test
+	public void testSavingWithoutAFileDoesNothing() throws IOException {
+		CachingAddressVerifier cav = new CachingAddressVerifier(av, 100, 1, TimeUnit.MINUTES);
+		cav.verify(Arrays.asList(address("123 Main St")));
+		cav.save();
+		cav.close();
+	}
+
+	@Test
+	public void testOnlyThisCallsVerdictIsCached() {
+		AtomicInteger calls = new AtomicInteger();
+		CachingAddressVerifier cav = new CachingAddressVerifier(new AddressVerifier() {
+			@Override
+			public void verify(List<Address> addresses) {
+				// decides nothing the first time, like a verifier that swallowed a failure
+				if ( calls.getAndIncrement() > 0 ) {
+					addresses.forEach(address -> address.setVerified(false));
+				}
+			}
+		}, 100, 1, TimeUnit.MINUTES);
+
+		// decided before it ever got here
+		Address stale = address("123 Main St");
+		stale.setVerified(true);
+		cav.verify(Arrays.asList(stale));
+		Assert.assertEquals(0, cav.size());
+
+		Address fresh = address("123 Main St");
+		cav.verify(Arrays.asList(fresh));
+		Address cached = address("123 Main St");
+		cav.verify(Arrays.asList(cached));
+		Assert.assertEquals(2, calls.get());
+		Assert.assertFalse(cached.isVerified());
+	}
+}
@@ -0,0 +1,203 @@
+package com.joshcummings.codeplay.concurrency.throttling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+import com.joshcummings.codeplay.concurrency.NoValidAddressesException;
+import com.joshcummings.codeplay.concurrency.throttle.CachingAddressVerifier;
+import com.joshcummings.codeplay.concurrency.throttle.CircuitOpenException;
+import com.joshcummings.codeplay.concurrency.throttle.HedgingAddressVerifier;
+import com.joshcummings.codeplay.concurrency.throttle.SingleFlightAddressVerifier;
+
+public class HedgingAddressVerifierTest {
+	private final AtomicInteger delegated = new AtomicInteger();
+	private final AtomicInteger interrupted = new AtomicInteger();
+	private final AtomicBoolean failing = new AtomicBoolean();
+	private final AtomicBoolean hangNext = new AtomicBoolean();
+	private volatile long answerIn = 10;
+
+	// answers in 10ms, or however long it's told, except when told to hang for a second
+	private final AddressVerifier av = new AddressVerifier() {
+		@Override
+		public void verify(List<Address> addresses) {
+			delegated.incrementAndGet();
+			if ( failing.get() ) {
+				throw new NoValidAddressesException();
+			}
+			try {
+				Thread.sleep(hangNext.getAndSet(false) ? 1000 : answerIn);
+			} catch ( InterruptedException e ) {
+				interrupted.incrementAndGet();
+				return;
+			}
+			addresses.forEach(address -> address.setVerified(true));
+		}
+	};
+
+	private HedgingAddressVerifier hav;
+
+	@After
+	public void tearDown() {
+		hav.close();
+	}
+
+	private List<Address> addresses() {
+		return Arrays.asList(new Address("123 Main St", "Boblandia", "UT", "84000"),
+				new Address("9 Elm St", "Boblandia", "UT", "84000"));
+	}
+
+	@Test
+	public void testHedgeWinsAndLoserIsCancelled() throws InterruptedException {
+		hav = new HedgingAddressVerifier(av, 0.95, 50, 0.5, 10, 1000);
+		List<Address> addresses = addresses();
+		hangNext.set(true);
+
+		long start = System.nanoTime();
+		hav.verify(addresses);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		Assert.assertTrue("Took " + elapsed + "ms", elapsed < 500);
+		Assert.assertTrue(addresses.stream().allMatch(Address::isVerified));
+		Assert.assertEquals(2, delegated.get());
+		Thread.sleep(100);
+		Assert.assertEquals(1, interrupted.get());
+	}
+
+	@Test
+	public void testFewCallsAreHedged() {
+		hav = new HedgingAddressVerifier(av, 0.95, 200, 0.5, 10, 1000);
+		for ( int i = 0; i < 50; i++ ) {
+			hav.verify(addresses());
+		}
+		// only the slowest few are hedged once the delay is learned
+		Assert.assertTrue(hav.getHedgeDelay(TimeUnit.MILLISECONDS) < 200);
+		Assert.assertTrue("Made " + delegated.get() + " calls", delegated.get() < 60);
+	}
+
+	@Test
+	public void testCircuitOpensAndRecovers() throws InterruptedException {
+		hav = new HedgingAddressVerifier(av, 0.95, 500, 0.5, 10, 100);
+		failing.set(true);
+		for ( int i = 0; i < 5; i++ ) {
+			try {
+				hav.verify(addresses());
+				Assert.fail("The backend is failing");
+			} catch ( NoValidAddressesException e ) {
+				// expected
+			}
+		}
+		int made = delegated.get();
+		try {
+			hav.verify(addresses());
+			Assert.fail("The circuit should be open");
+		} catch ( CircuitOpenException e ) {
+			Assert.assertEquals(made, delegated.get());
+		}
+
+		Thread.sleep(150);
+		failing.set(false);
+		delegated.set(0);
+		hav.verify(addresses());
+		hav.verify(addresses());
+		Assert.assertEquals(2, delegated.get());
+	}
+
+	@Test
+	public void testInterruptedTrialMakesWayForTheNext() throws InterruptedException {
+		hav = new HedgingAddressVerifier(av, 0.95, 500, 0.5, 10, 100);
+		failing.set(true);
+		for ( int i = 0; i < 5; i++ ) {
+			try {
+				hav.verify(addresses());
+			} catch ( NoValidAddressesException e ) {
+				// expected
+			}
+		}
+		Thread.sleep(150);
+		failing.set(false);
+
+		// the trial call gives up right away
+		Thread.currentThread().interrupt();
+		hav.verify(addresses());
+		Assert.assertTrue(Thread.interrupted());
+
+		List<Address> addresses = addresses();
+		hav.verify(addresses);
+		Assert.assertTrue(addresses.stream().allMatch(Address::isVerified));
+	}
+
+	@Test
+	public void testHedgesStayWithinBudgetWhenTheBackendSlowsDown() {
+		// every call runs past the delay until there are enough round trips to learn a new one
+		hav = new HedgingAddressVerifier(av, 0.95, 5, 0.5, 10, 1000);
+		answerIn = 30;
+		for ( int i = 0; i < 19; i++ ) {
+			hav.verify(addresses());
+		}
+		// a burst of ten, plus a tenth of one for each call
+		Assert.assertTrue("Made " + delegated.get() + " calls", delegated.get() <= 19 + 11);
+	}
+
+	@Test
+	public void testVerifierSeesTheRealIds() {
+		List<Address> addresses = addresses();
+		hav = new HedgingAddressVerifier(new AddressVerifier() {
+			@Override
+			public void verify(List<Address> standIns) {
+				for ( int i = 0; i < standIns.size(); i++ ) {
+					Assert.assertEquals(addresses.get(i).getId(), standIns.get(i).getId());
+					standIns.get(i).setVerified(standIns.get(i).getId() % 2 == 0);
+				}
+			}
+		});
+		hav.verify(addresses);
+		for ( Address address : addresses ) {
+			Assert.assertEquals(address.getId() % 2 == 0, address.isVerified());
+		}
+	}
+
+	@Test
+	public void testWorksInFrontOfCachingAndSingleFlight() throws InterruptedException {
+		CachingAddressVerifier cache = new CachingAddressVerifier(new SingleFlightAddressVerifier(av, 5, TimeUnit.SECONDS),
+				100, 1, TimeUnit.MINUTES);
+		hav = new HedgingAddressVerifier(cache, 0.95, 1000, 0.5, 10, 1000);
+		// slow enough that every caller arrives while the first call is still out
+		answerIn = 200;
+
+		// the same household from several threads at once, so single flight has followers to share with
+		List<Thread> callers = new ArrayList<>();
+		List<Address> verified = Collections.synchronizedList(new ArrayList<>());
+		for ( int i = 0; i < 4; i++ ) {
+			callers.add(new Thread(() -> {
+				List<Address> addresses = addresses();
+				hav.verify(addresses);
+				verified.addAll(addresses);
+			}));
+		}
+		callers.forEach(Thread::start);
+		for ( Thread caller : callers ) {
+			caller.join();
+		}
+		Assert.assertEquals(8, verified.size());
+		Assert.assertTrue(verified.stream().allMatch(Address::isVerified));
+		int made = delegated.get();
+		Assert.assertTrue("Made " + made + " calls", made <= 2);
+
+		List<Address> again = addresses();
+		hav.verify(again);
+		Assert.assertTrue(again.stream().allMatch(Address::isVerified));
+		Assert.assertEquals(made, delegated.get());
+		Assert.assertEquals(2, cache.size());
+	}
+}
@@ -0,0 +1,88 @@
+package com.joshcummings.codeplay.concurrency.throttling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+import com.joshcummings.codeplay.concurrency.throttle.LingerBatcher;
+
+public class LingerBatcherTest {
+	private final Queue<Integer> batches = new ConcurrentLinkedQueue<>();
+
+	private final AddressVerifier av = new AddressVerifier() {
+		@Override
+		public void verify(List<Address> addresses) {
+			batches.add(addresses.size());
+			addresses.forEach(address -> address.setVerified(true));
+		}
+	};
+
+	private List<Address> addresses(int howMany) {
+		List<Address> addresses = new ArrayList<>(howMany);
+		for ( int i = 0; i < howMany; i++ ) {
+			addresses.add(new Address(i + " Main St", "Boblandia", "UT", "84000"));
+		}
+		return addresses;
+	}
+
+	@Test
+	public void testFullBatchesGoRightAway() throws Exception {
+		LingerBatcher batcher = new LingerBatcher(10, 5000, av);
+		try {
+			List<Address> addresses = addresses(30);
+			long start = System.nanoTime();
+			batcher.submit(addresses).get(1, TimeUnit.SECONDS);
+
+			Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+			Assert.assertEquals(Arrays.asList(10, 10, 10), new ArrayList<>(batches));
+			Assert.assertTrue(addresses.stream().allMatch(Address::isVerified));
+		} finally {
+			batcher.close();
+		}
+	}
+
+	@Test
+	public void testPartialBatchGoesAfterLingering() throws Exception {
+		LingerBatcher batcher = new LingerBatcher(10, 100, av);
+		try {
+			long start = System.nanoTime();
+			Future<?> first = batcher.submit(addresses(3));
+			Future<?> second = batcher.submit(addresses(2));
+			first.get(1, TimeUnit.SECONDS);
+			second.get(1, TimeUnit.SECONDS);
+
+			Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+			Assert.assertEquals(Arrays.asList(5), new ArrayList<>(batches));
+		} finally {
+			batcher.close();
+		}
+	}
+
+	@Test
+	public void testThreadsDontGrowWithLoad() throws Exception {
+		int before = Thread.activeCount();
+		LingerBatcher batcher = new LingerBatcher(50, 10, av, 2);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for ( int i = 0; i < 2000; i++ ) {
+				futures.add(batcher.submit(addresses(3)));
+			}
+			for ( Future<?> future : futures ) {
+				future.get(5, TimeUnit.SECONDS);
+			}
+			Assert.assertTrue(Thread.activeCount() <= before + 3);
+			Assert.assertEquals(6000, batches.stream().mapToInt(Integer::intValue).sum());
+		} finally {
+			batcher.close();
+		}
+	}
+}
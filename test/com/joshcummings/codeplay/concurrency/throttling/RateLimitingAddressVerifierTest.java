@@ -0,0 +1,90 @@
+package com.joshcummings.codeplay.concurrency.throttling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+import com.joshcummings.codeplay.concurrency.throttle.RateLimitExceededException;
+import com.joshcummings.codeplay.concurrency.throttle.RateLimitingAddressVerifier;
+
+public class RateLimitingAddressVerifierTest {
+	private final AtomicInteger delegated = new AtomicInteger();
+
+	private final AddressVerifier av = new AddressVerifier() {
+		@Override
+		public void verify(List<Address> addresses) {
+			delegated.incrementAndGet();
+			addresses.forEach(address -> address.setVerified(true));
+		}
+	};
+
+	private List<Address> addresses() {
+		return Arrays.asList(new Address("123 Main St", "Boblandia", "UT", "84000"));
+	}
+
+	@Test
+	public void testBurstThenFailFast() {
+		RateLimitingAddressVerifier rlav = new RateLimitingAddressVerifier(av, 1, 5, 0, TimeUnit.MILLISECONDS);
+		for ( int i = 0; i < 5; i++ ) {
+			rlav.verify(addresses());
+		}
+		try {
+			rlav.verify(addresses());
+			Assert.fail("The bucket should have been empty");
+		} catch ( RateLimitExceededException e ) {
+			// expected
+		}
+		Assert.assertEquals(5, delegated.get());
+	}
+
+	@Test
+	public void testWaitersAreHeldToTheRate() throws InterruptedException {
+		RateLimitingAddressVerifier rlav = new RateLimitingAddressVerifier(av, 50, 1, 5, TimeUnit.SECONDS);
+		List<Thread> callers = new ArrayList<>();
+		long start = System.nanoTime();
+		for ( int i = 0; i < 4; i++ ) {
+			callers.add(new Thread(() -> {
+				for ( int j = 0; j < 5; j++ ) {
+					rlav.verify(addresses());
+				}
+			}));
+		}
+		callers.forEach(Thread::start);
+		for ( Thread caller : callers ) {
+			caller.join();
+		}
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		Assert.assertEquals(20, delegated.get());
+		// one right away and then one every 20ms
+		Assert.assertTrue("Took " + elapsed + "ms", elapsed >= 19 * 20 - 10);
+	}
+
+	@Test
+	public void testWaitLongerThanAllowedFails() {
+		RateLimitingAddressVerifier rlav = new RateLimitingAddressVerifier(av, 10, 1, 50, TimeUnit.MILLISECONDS);
+		rlav.verify(addresses());
+		try {
+			rlav.verify(addresses());
+			Assert.fail("The next token is 100ms away");
+		} catch ( RateLimitExceededException e ) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testThrottling() {
+		RateLimitingAddressVerifier rlav = new RateLimitingAddressVerifier(av, 10, 1, 0, TimeUnit.MILLISECONDS);
+		rlav.throttleUp(10);
+		Assert.assertEquals(20, rlav.getRate());
+		rlav.throttleDown(100);
+		Assert.assertEquals(1, rlav.getRate());
+	}
+}
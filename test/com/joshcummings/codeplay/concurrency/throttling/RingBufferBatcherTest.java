@@ -0,0 +1,160 @@
+package com.joshcummings.codeplay.concurrency.throttling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+import com.joshcummings.codeplay.concurrency.throttle.Batcher;
+import com.joshcummings.codeplay.concurrency.throttle.CyclicBarrierBatcher;
+import com.joshcummings.codeplay.concurrency.throttle.PhaserBatcher;
+import com.joshcummings.codeplay.concurrency.throttle.RingBufferBatcher;
+
+public class RingBufferBatcherTest {
+	private final Queue<Integer> batches = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger verified = new AtomicInteger();
+
+	private final AddressVerifier av = new AddressVerifier() {
+		@Override
+		public void verify(List<Address> addresses) {
+			batches.add(addresses.size());
+			verified.addAndGet(addresses.size());
+			addresses.forEach(address -> address.setVerified(true));
+		}
+	};
+
+	private List<Address> addresses(int howMany) {
+		List<Address> addresses = new ArrayList<>(howMany);
+		for ( int i = 0; i < howMany; i++ ) {
+			addresses.add(new Address(i + " Main St", "Boblandia", "UT", "84000"));
+		}
+		return addresses;
+	}
+
+	@Test
+	public void testRunsAreSentAsBatches() throws Exception {
+		RingBufferBatcher batcher = new RingBufferBatcher(10, 5000, av);
+		try {
+			List<Address> addresses = addresses(25);
+			Future<?> full = batcher.submit(addresses.subList(0, 20));
+			full.get(1, TimeUnit.SECONDS);
+			Future<?> partial = batcher.submit(addresses.subList(20, 25));
+			Assert.assertFalse(partial.isDone());
+			batcher.submit(addresses(5)).get(1, TimeUnit.SECONDS);
+			partial.get(1, TimeUnit.SECONDS);
+
+			Assert.assertTrue(batches.stream().allMatch(size -> size == 10));
+			Assert.assertTrue(addresses.stream().allMatch(Address::isVerified));
+		} finally {
+			batcher.close();
+		}
+	}
+
+	@Test
+	public void testPartialBatchGoesAfterLingering() throws Exception {
+		RingBufferBatcher batcher = new RingBufferBatcher(10, 100, av);
+		try {
+			long start = System.nanoTime();
+			batcher.submit(addresses(3)).get(1, TimeUnit.SECONDS);
+			Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+		} finally {
+			batcher.close();
+		}
+	}
+
+	@Test
+	public void testCallersWaitWhenTheRingIsFull() throws Exception {
+		// a ring much smaller than what is sent through it, and more addresses in one call than it holds
+		RingBufferBatcher batcher = new RingBufferBatcher(8, 1, av, 16, 2);
+		try {
+			List<Thread> producers = new ArrayList<>();
+			Queue<Future<?>> submitted = new ConcurrentLinkedQueue<>();
+			for ( int i = 0; i < 8; i++ ) {
+				producers.add(new Thread(() -> {
+					for ( int j = 0; j < 200; j++ ) {
+						submitted.add(batcher.submit(addresses(j % 3 == 0 ? 40 : 3)));
+					}
+				}));
+			}
+			producers.forEach(Thread::start);
+			for ( Thread producer : producers ) {
+				producer.join();
+			}
+			for ( Future<?> future : submitted ) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+			int expected = 8 * ( 67 * 40 + 133 * 3 );
+			Assert.assertEquals(expected, verified.get());
+			Assert.assertTrue(batches.stream().allMatch(size -> size <= 8));
+		} finally {
+			batcher.close();
+		}
+	}
+
+	/**
+	 * Not a proper benchmark--the repo has no JMH--but the same load through each batcher, with a
+	 * verifier that costs nothing, so that what's left is the cost of the batching itself
+	 */
+	@Test
+	@Ignore("A benchmark that starts hundreds of threads; run by hand")
+	public void testThroughputAgainstOtherBatchers() throws Exception {
+		int addressesPerProducer = 2000;
+		for ( int producers : new int[] { 1, 8, 64 } ) {
+			int perProducer = addressesPerProducer / ( producers == 1 ? 1 : producers / 8 );
+			double ring = throughput(() -> new RingBufferBatcher(100, 5, av), producers, perProducer);
+			double phaser = throughput(() -> new PhaserBatcher(100, 5, av), producers, perProducer);
+			double barrier = throughput(() -> new CyclicBarrierBatcher(100, 5, av), producers, perProducer);
+			System.out.printf("%d producers: ring %.0f/s, phaser %.0f/s, cyclic barrier %.0f/s%n",
+					producers, ring, phaser, barrier);
+		}
+	}
+
+	private double throughput(Supplier<Batcher> batchers, int producers, int perProducer) throws Exception {
+		verified.set(0);
+		Batcher batcher = batchers.get();
+		try {
+			Queue<Future<?>> submitted = new ConcurrentLinkedQueue<>();
+			List<Thread> threads = new ArrayList<>();
+			for ( int i = 0; i < producers; i++ ) {
+				threads.add(new Thread(() -> {
+					for ( int j = 0; j < perProducer; j++ ) {
+						submitted.add(batcher.submit(addresses(1)));
+					}
+				}));
+			}
+			long start = System.nanoTime();
+			threads.forEach(Thread::start);
+			for ( Thread thread : threads ) {
+				thread.join();
+			}
+			for ( Future<?> future : submitted ) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+			long elapsed = System.nanoTime() - start;
+			Assert.assertEquals(producers * perProducer, verified.get());
+			return producers * perProducer / ( elapsed / 1e9 );
+		} finally {
+			close(batcher);
+		}
+	}
+
+	private void close(Batcher batcher) {
+		if ( batcher instanceof RingBufferBatcher ) {
+			((RingBufferBatcher)batcher).close();
+		} else if ( batcher instanceof PhaserBatcher ) {
+			((PhaserBatcher)batcher).close();
+		} else if ( batcher instanceof CyclicBarrierBatcher ) {
+			((CyclicBarrierBatcher)batcher).close();
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package com.joshcummings.codeplay.concurrency.throttling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.joshcummings.codeplay.concurrency.Address;
+import com.joshcummings.codeplay.concurrency.AddressVerifier;
+import com.joshcummings.codeplay.concurrency.NoValidAddressesException;
+import com.joshcummings.codeplay.concurrency.throttle.ConnectionLimitingAddressVerifier;
+import com.joshcummings.codeplay.concurrency.throttle.SingleFlightAddressVerifier;
+
+public class SingleFlightAddressVerifierTest {
+	private final AtomicInteger delegated = new AtomicInteger();
+	private final AtomicBoolean failing = new AtomicBoolean();
+
+	private final AddressVerifier av = new AddressVerifier() {
+		@Override
+		public void verify(List<Address> addresses) {
+			delegated.addAndGet(addresses.size());
+			try {
+				Thread.sleep(200);
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+			if ( failing.getAndSet(false) ) {
+				throw new NoValidAddressesException();
+			}
+			addresses.forEach(address -> address.setVerified(true));
+		}
+	};
+
+	private Address household() {
+		return new Address("123 Main St", "Boblandia", "UT", "84000");
+	}
+
+	private List<Address> hammer(AddressVerifier verifier, int threads) throws InterruptedException {
+		CountDownLatch ready = new CountDownLatch(threads);
+		List<Address> addresses = Collections.synchronizedList(new ArrayList<>());
+		List<Thread> callers = new ArrayList<>();
+		for ( int i = 0; i < threads; i++ ) {
+			callers.add(new Thread(() -> {
+				Address address = household();
+				addresses.add(address);
+				ready.countDown();
+				try {
+					ready.await();
+					verifier.verify(Arrays.asList(address));
+				} catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				} catch ( NoValidAddressesException e ) {
+					// the one that failed
+				}
+			}));
+		}
+		callers.forEach(Thread::start);
+		for ( Thread caller : callers ) {
+			caller.join();
+		}
+		return addresses;
+	}
+
+	@Test
+	public void testConcurrentDuplicatesShareOneCall() throws InterruptedException {
+		List<Address> addresses = hammer(new SingleFlightAddressVerifier(av), 8);
+
+		Assert.assertEquals(1, delegated.get());
+		Assert.assertTrue(addresses.stream().allMatch(Address::isVerified));
+	}
+
+	@Test
+	public void testWorksInFrontOfAConnectionLimiter() throws InterruptedException {
+		AddressVerifier verifier = new SingleFlightAddressVerifier(new ConnectionLimitingAddressVerifier(av, 2));
+		List<Address> addresses = hammer(verifier, 8);
+
+		Assert.assertEquals(1, delegated.get());
+		Assert.assertTrue(addresses.stream().allMatch(Address::isVerified));
+	}
+
+	@Test
+	public void testFollowersAskForThemselvesWhenTheLeaderFails() throws InterruptedException {
+		failing.set(true);
+		List<Address> addresses = hammer(new SingleFlightAddressVerifier(av), 4);
+
+		Assert.assertEquals(3, addresses.stream().filter(Address::isVerified).count());
+		Assert.assertTrue(delegated.get() > 1);
+	}
+
+	@Test
+	public void testAfterwardsTheAddressIsVerifiedAgain() {
+		SingleFlightAddressVerifier verifier = new SingleFlightAddressVerifier(av);
+		verifier.verify(Arrays.asList(household()));
+		verifier.verify(Arrays.asList(household()));
+
+		Assert.assertEquals(2, delegated.get());
+	}
+
+	@Test
+	public void testAddressLeftUndecidedIsNotLeftInFlight() {
+		AtomicBoolean deciding = new AtomicBoolean();
+		AddressVerifier verifier = new SingleFlightAddressVerifier(new AddressVerifier() {
+			@Override
+			public void verify(List<Address> addresses) {
+				delegated.addAndGet(addresses.size());
+				// like a verifier that swallows an interrupt the first time
+				if ( deciding.getAndSet(true) ) {
+					addresses.forEach(address -> address.setVerified(true));
+				}
+			}
+		}, 5, TimeUnit.SECONDS);
+
+		verifier.verify(Arrays.asList(household()));
+		Address next = household();
+		long start = System.nanoTime();
+		verifier.verify(Arrays.asList(next));
+
+		Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+		Assert.assertTrue(next.isVerified());
+		Assert.assertEquals(2, delegated.get());
+	}
+}